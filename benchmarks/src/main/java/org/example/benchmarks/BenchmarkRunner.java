@@ -0,0 +1,28 @@
+package org.example.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+public class BenchmarkRunner {
+
+	// Same as the stock JMH main, except results always land in a JSON file so runs can be diffed between releases.
+	// Any JMH option still works, e.g. "java -jar benchmarks.jar IDManager -rff ids.json".
+
+	private static final String DEFAULT_RESULT_FILE = "target/jmh-result.json";
+
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+		CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+		Options options = new OptionsBuilder()
+				.parent(commandLineOptions)
+				.resultFormat(commandLineOptions.getResultFormat().orElse(ResultFormatType.JSON))
+				.result(commandLineOptions.getResult().orElse(DEFAULT_RESULT_FILE))
+				.build();
+		new Runner(options).run();
+	}
+
+}
@@ -0,0 +1,72 @@
+package org.example.benchmarks;
+
+import net.dv8tion.jda.api.EmbedBuilder;
+import net.dv8tion.jda.api.entities.MessageEmbed;
+import net.dv8tion.jda.api.entities.emoji.Emoji;
+import net.dv8tion.jda.api.interactions.components.selections.SelectOption;
+import net.dv8tion.jda.api.interactions.components.selections.StringSelectMenu;
+import net.dv8tion.jda.api.utils.messages.MessageCreateBuilder;
+import net.dv8tion.jda.api.utils.messages.MessageCreateData;
+import org.example.launch.Launcher;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EmbedBenchmark {
+
+	@Param({ "5", "25" })
+	public int ranks;
+
+	private List<SelectOption> menuOptions;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		ArrayList<SelectOption> options = new ArrayList<>();
+		for(int i = 0; i < ranks; i++) {
+			options.add(SelectOption.of("Layout Creator " + i, String.valueOf(1_173_426_020_041_371_754L + i))
+					.withEmoji(Emoji.fromCustom("rank" + i, 1_173_426_019_194_110_093L + i, false)));
+		}
+		menuOptions = List.copyOf(options);
+	}
+
+	@Benchmark
+	public MessageEmbed styledEmbed() {
+		EmbedBuilder embedBuilder = Launcher.getStyledEmbedBuilder(Launcher.EmbedStates.FAILURE);
+		embedBuilder.setTitle("Application Timed Out!");
+		embedBuilder.setDescription("Your application session has expired.\nPlease try starting a new application.");
+		return embedBuilder.build();
+	}
+
+	@Benchmark
+	public MessageCreateData applicationPost() { // The embed and judge menu sendApplication puts in the forum post
+		EmbedBuilder embedBuilder = Launcher.getStyledEmbedBuilder(Launcher.EmbedStates.SUCCESS);
+		embedBuilder.setTitle("New application!");
+		embedBuilder.addField("User", "Applicant", true);
+		embedBuilder.addField("Current Rank", "Layout Creator", true);
+		embedBuilder.setDescription(
+				"""
+				Waiting on feedback from a judge!
+				Select the role that should be rewarded from the dropdown.
+				Feel free to share opinions in the thread before submitting.
+				"""
+		);
+		embedBuilder.setThumbnail("https://cdn.discordapp.com/embed/avatars/0.png");
+
+		StringSelectMenu.Builder menuBuilder = StringSelectMenu.create("1100000000000000000");
+		menuBuilder.addOptions(menuOptions);
+
+		return new MessageCreateBuilder()
+				.addEmbeds(embedBuilder.build())
+				.addActionRow(menuBuilder.build())
+				.build();
+	}
+
+}
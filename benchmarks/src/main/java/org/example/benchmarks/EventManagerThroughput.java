@@ -0,0 +1,110 @@
+package org.example.benchmarks;
+
+import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
+import net.dv8tion.jda.api.hooks.IEventManager;
+import net.dv8tion.jda.api.hooks.InterfacedEventManager;
+import net.dv8tion.jda.api.hooks.ListenerAdapter;
+import org.example.launch.VirtualThreadEventManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+public class EventManagerThroughput {
+
+	// Feeds the same synthetic DM traffic through JDA's default event manager, handed events one at a time on a single
+	// thread the way a shard does, and through the VirtualThreadEventManager. The listener makes one blocking REST call
+	// through FakeDiscord per message, as the listeners did before their flows were composed, and checks that each
+	// user's messages arrive one at a time, in the order they were sent. Exits non-zero when the virtual manager reorders a user's
+	// messages or when either manager loses one.
+	// "java -cp target/benchmarks.jar org.example.benchmarks.EventManagerThroughput [users] [messages per user] [latency ms]"
+
+	private static final long GUILD_ID = 1_190_000_000_000_000_000L;
+
+	public static void main(String[] args) throws InterruptedException {
+		int users = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+		int messagesPerUser = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+		long latencyMillis = args.length > 2 ? Long.parseLong(args[2]) : 20;
+
+		FakeDiscord discord = new FakeDiscord(new FakeDiscord.Settings(TimeUnit.MILLISECONDS.toMicros(latencyMillis), 0, 0, 0), GUILD_ID);
+		ArrayList<FakeDiscord.FakeUser> senders = new ArrayList<>();
+		for(int i = 0; i < users; i++) {
+			senders.add(discord.user());
+		}
+		ArrayList<MessageReceivedEvent> events = new ArrayList<>(); // Round robin across users, as a busy gateway would deliver them
+		for(int sequence = 0; sequence < messagesPerUser; sequence++) {
+			for(FakeDiscord.FakeUser user : senders) {
+				events.add(new MessageReceivedEvent(user.user.getJDA(), 0, user.message(String.valueOf(sequence))));
+			}
+		}
+
+		System.out.printf("%,d users sending %,d DMs each, one blocking %d ms REST call per message%n", users, messagesPerUser, latencyMillis);
+		System.out.printf("%-8s %10s %12s %10s %10s%n", "manager", "events", "events/sec", "wall ms", "reordered");
+		ExecutorService shardThread = Executors.newSingleThreadExecutor();
+		InterfacedEventManager defaultManager = new InterfacedEventManager();
+		Run before = run("default", defaultManager, event -> shardThread.execute(() -> defaultManager.handle(event)), events);
+		VirtualThreadEventManager virtualManager = new VirtualThreadEventManager();
+		Run after = run("virtual", virtualManager, virtualManager::handle, events);
+		shardThread.shutdown();
+		System.out.printf("virtual/default throughput: %.1fx%n", after.eventsPerSecond() / before.eventsPerSecond());
+
+		discord.shutdown();
+		boolean passed = before.lost == 0 && after.lost == 0 && after.reordered == 0;
+		System.exit(passed ? 0 : 1);
+	}
+
+	private static Run run(String name, IEventManager manager, Consumer<MessageReceivedEvent> dispatch, List<MessageReceivedEvent> events) throws InterruptedException {
+		CountDownLatch handled = new CountDownLatch(events.size());
+		BlockingListener listener = new BlockingListener(handled);
+		manager.register(listener);
+		long startTime = System.nanoTime();
+		for(MessageReceivedEvent event : events) {
+			dispatch.accept(event);
+		}
+		boolean finished = handled.await(10, TimeUnit.MINUTES);
+		long wallNanos = System.nanoTime() - startTime;
+		manager.unregister(listener);
+
+		Run run = new Run(events.size(), wallNanos, finished ? 0 : handled.getCount(), listener.reordered.sum());
+		System.out.printf("%-8s %,10d %,12.0f %,10.0f %10d%n", name, run.events, run.eventsPerSecond(), wallNanos / 1e6, run.reordered);
+		return run;
+	}
+
+	private static final class BlockingListener extends ListenerAdapter {
+
+		private final CountDownLatch handled;
+		private final ConcurrentHashMap<Long, Integer> lastSequence = new ConcurrentHashMap<>();
+		private final ConcurrentHashMap<Long, Boolean> handling = new ConcurrentHashMap<>();
+		private final LongAdder reordered = new LongAdder();
+
+		private BlockingListener(CountDownLatch handled) {
+			this.handled = handled;
+		}
+
+		@Override
+		public void onMessageReceived(MessageReceivedEvent event) {
+			long userId = event.getAuthor().getIdLong();
+			if(handling.putIfAbsent(userId, Boolean.TRUE) != null) reordered.increment(); // Another of the user's messages is still running
+			event.getAuthor().openPrivateChannel().complete(); // The kind of call the listeners used to block on
+			int sequence = Integer.parseInt(event.getMessage().getContentRaw());
+			Integer previous = lastSequence.put(userId, sequence);
+			if(sequence != (previous == null ? 0 : previous + 1)) reordered.increment();
+			handling.remove(userId);
+			handled.countDown();
+		}
+
+	}
+
+	private record Run(int events, long wallNanos, long lost, long reordered) {
+
+		private double eventsPerSecond() { return events / (wallNanos / 1e9); }
+
+	}
+
+}
@@ -0,0 +1,433 @@
+package org.example.benchmarks;
+
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.entities.*;
+import net.dv8tion.jda.api.entities.channel.ChannelType;
+import net.dv8tion.jda.api.entities.channel.concrete.ForumChannel;
+import net.dv8tion.jda.api.entities.channel.concrete.PrivateChannel;
+import net.dv8tion.jda.api.entities.channel.concrete.ThreadChannel;
+import net.dv8tion.jda.api.entities.channel.forums.ForumPost;
+import net.dv8tion.jda.api.entities.channel.unions.MessageChannelUnion;
+import net.dv8tion.jda.api.entities.emoji.Emoji;
+import net.dv8tion.jda.api.entities.emoji.EmojiUnion;
+import net.dv8tion.jda.api.entities.emoji.RichCustomEmoji;
+import net.dv8tion.jda.api.interactions.InteractionHook;
+import net.dv8tion.jda.api.interactions.commands.SlashCommandInteraction;
+import net.dv8tion.jda.api.interactions.components.buttons.Button;
+import net.dv8tion.jda.api.interactions.components.buttons.ButtonInteraction;
+import net.dv8tion.jda.api.interactions.components.selections.StringSelectInteraction;
+import net.dv8tion.jda.api.interactions.components.selections.StringSelectMenu;
+import net.dv8tion.jda.api.requests.RestAction;
+import net.dv8tion.jda.api.sharding.ShardManager;
+import net.dv8tion.jda.api.utils.messages.MessageEditData;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+final class FakeDiscord {
+
+	// Just enough of JDA and Discord's REST API, built from dynamic proxies, to drive the listeners without a connection.
+	// Every RestAction completes on a scheduler after the configured latency. A 429 holds the request for its retry
+	// after and tries again, the way JDA's requester does, and injected server errors fail the request outright.
+	// Anything the bot says to a user, through a DM, an edit or an interaction hook, lands in that user's inbox.
+	// Like JDA's cache after a restart, a DM channel is only known once it has been opened, and users are only found
+	// through a request. Guilds take consecutive ids and each has its own ranks, emojis and applications forum.
+
+	record Settings(long latencyMicros, double rateLimitChance, long retryAfterMillis, double errorChance) {}
+
+	record Reply(String text, long nanoTime) {}
+
+	private static final long SNOWFLAKE_BASE = 1_150_000_000_000_000_000L;
+
+	private final Settings settings;
+	private final ScheduledExecutorService rest;
+	private final AtomicLong snowflakes = new AtomicLong(SNOWFLAKE_BASE);
+	private final ConcurrentHashMap<Long, PrivateChannel> privateChannels = new ConcurrentHashMap<>(); // Opened DMs, as the shards would cache them
+	private final ConcurrentHashMap<Long, User> users = new ConcurrentHashMap<>();
+	private final LongAdder restCalls = new LongAdder();
+	private final LongAdder rateLimits = new LongAdder();
+	private final LongAdder serverErrors = new LongAdder();
+	private final JDA jda;
+	private final ShardManager shardManager;
+	private final List<FakeGuild> guilds;
+	private final Map<Long, FakeGuild> guildsById;
+	private final Member applicant;
+
+	FakeDiscord(Settings settings, long guildId) {
+		this(settings, guildId, 1, 1);
+	}
+
+	FakeDiscord(Settings settings, long firstGuildId, int guildCount, int ranksPerGuild) {
+		this.settings = settings;
+		rest = Executors.newScheduledThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors() / 2), runnable -> {
+			Thread thread = new Thread(runnable, "fake-rest");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		shardManager = entity(ShardManager.class, Map.of(
+				"getPrivateChannelById", (method, args) -> privateChannels.get(Long.parseLong(String.valueOf(args[0]))),
+				"getGuildById", (method, args) -> guildById(args[0]),
+				"retrieveUserById", (method, args) -> restAction(method, () -> {
+					User user = users.get(Long.parseLong(String.valueOf(args[0])));
+					if(user == null) throw new IllegalStateException("Unknown user " + args[0]); // Discord's 10013
+					return user;
+				})
+		));
+		HashMap<String, Answer> jdaAnswers = new HashMap<>();
+		jdaAnswers.put("getShardManager", (method, args) -> shardManager);
+		jdaAnswers.put("getGuildById", (method, args) -> guildById(args[0]));
+		jdaAnswers.put("getGuilds", (method, args) -> guilds().stream().map(FakeGuild::guild).toList());
+		jda = entity(JDA.class, jdaAnswers);
+
+		applicant = entity(Member.class, Map.of("getRoles", (method, args) -> List.of()));
+		ArrayList<FakeGuild> createdGuilds = new ArrayList<>(guildCount);
+		HashMap<Long, FakeGuild> createdGuildsById = new HashMap<>();
+		for(int i = 0; i < guildCount; i++) {
+			FakeGuild fakeGuild = new FakeGuild(firstGuildId + i, ranksPerGuild);
+			createdGuilds.add(fakeGuild);
+			createdGuildsById.put(firstGuildId + i, fakeGuild);
+		}
+		guilds = List.copyOf(createdGuilds);
+		guildsById = Map.copyOf(createdGuildsById);
+	}
+
+	Guild guild() { return guilds.get(0).guild; } // The first guild, all a single guild run needs
+
+	List<FakeGuild> guilds() { return guilds; }
+
+	JDA jda() { return jda; }
+
+	Role rankRole() { return guilds.get(0).rankRole(); }
+
+	long restCalls() { return restCalls.sum(); }
+
+	long rateLimits() { return rateLimits.sum(); }
+
+	long serverErrors() { return serverErrors.sum(); }
+
+	void shutdown() { rest.shutdownNow(); }
+
+	private Guild guildById(Object id) {
+		FakeGuild fakeGuild = guildsById.get(Long.parseLong(String.valueOf(id)));
+		return fakeGuild == null ? null : fakeGuild.guild;
+	}
+
+	final class FakeGuild {
+
+		final Guild guild;
+		final List<Role> rankRoles;
+		final List<RichCustomEmoji> rankEmojis; // Each rank's emoji, at the same index as its role
+		final ConcurrentLinkedQueue<String> posts = new ConcurrentLinkedQueue<>(); // Titles of the posts made in this guild's applications forum
+
+		private FakeGuild(long guildId, int ranks) {
+			ArrayList<Role> roles = new ArrayList<>(ranks);
+			ArrayList<RichCustomEmoji> emojis = new ArrayList<>(ranks);
+			HashMap<String, Role> rolesById = new HashMap<>();
+			HashMap<String, RichCustomEmoji> emojisById = new HashMap<>();
+			for(int i = 0; i < ranks; i++) {
+				String name = i == 0 ? "Layout Creator" : "Layout Creator " + (i + 1);
+				String emojiName = "lc" + (i + 1);
+				Role role = entity(Role.class, snowflake(snowflakes.incrementAndGet(), Map.of("getName", (method, args) -> name)));
+				RichCustomEmoji emoji = entity(RichCustomEmoji.class, new Class<?>[]{ EmojiUnion.class }, snowflake(snowflakes.incrementAndGet(), Map.of(
+						"getName", (method, args) -> emojiName,
+						"isAnimated", (method, args) -> false,
+						"getType", (method, args) -> Emoji.Type.CUSTOM
+				)));
+				roles.add(role);
+				emojis.add(emoji);
+				rolesById.put(role.getId(), role);
+				emojisById.put(emoji.getId(), emoji);
+			}
+			rankRoles = List.copyOf(roles);
+			rankEmojis = List.copyOf(emojis);
+
+			ThreadChannel applicationThread = entity(ThreadChannel.class, snowflake(snowflakes.incrementAndGet(), Map.of(
+					"sendMessage", (method, args) -> restAction(method, () -> newMessage(null, null, String.valueOf(args[0])))
+			)));
+			ForumChannel applicationForum = entity(ForumChannel.class, snowflake(snowflakes.incrementAndGet(), Map.of(
+					"createForumPost", (method, args) -> restAction(method, () -> {
+						posts.add(String.valueOf(args[0]));
+						return new ForumPost(newMessage(null, null, ""), applicationThread);
+					})
+			)));
+
+			HashMap<String, Answer> guildAnswers = snowflake(guildId, Map.of());
+			guildAnswers.put("getJDA", (method, args) -> jda);
+			guildAnswers.put("getName", (method, args) -> "Load Test");
+			guildAnswers.put("getForumChannelsByName", (method, args) -> List.of(applicationForum));
+			guildAnswers.put("getRoleById", (method, args) -> rolesById.get(String.valueOf(args[0])));
+			guildAnswers.put("getEmojiById", (method, args) -> null); // Not cached, so the rank registry fetches it
+			guildAnswers.put("retrieveEmojiById", (method, args) -> restAction(method, () -> emojisById.get(String.valueOf(args[0]))));
+			guildAnswers.put("retrieveMember", (method, args) -> restAction(method, () -> applicant));
+			guild = entity(Guild.class, guildAnswers);
+		}
+
+		Guild guild() { return guild; }
+
+		Role rankRole() { return rankRoles.get(0); }
+
+		String rankFile(int ranks) { // A roleIDs.txt holding this guild's first ranks
+			StringBuilder rankFile = new StringBuilder("RoleID, EmojiID\n");
+			for(int i = 0; i < ranks; i++) {
+				rankFile.append(rankRoles.get(i).getId()).append(", ").append(rankEmojis.get(i).getId()).append('\n');
+			}
+			return rankFile.toString();
+		}
+
+	}
+
+	// A user with a DM channel. Their inbox collects embed titles, edited embed titles and hook messages in order.
+	FakeUser user() {
+		return new FakeUser(snowflakes.incrementAndGet(), snowflakes.incrementAndGet());
+	}
+
+	final class FakeUser {
+
+		final long id;
+		final User user;
+		final PrivateChannel privateChannel;
+		final LinkedBlockingQueue<Reply> inbox = new LinkedBlockingQueue<>();
+		private volatile Message lastBotMessage; // The application message, once /apply has posted it
+
+		private FakeUser(long id, long channelId) {
+			this.id = id;
+			PrivateChannel[] channel = new PrivateChannel[1];
+			HashMap<String, Answer> userAnswers = snowflake(id, Map.of());
+			userAnswers.put("getJDA", (method, args) -> jda);
+			userAnswers.put("getName", (method, args) -> "user" + id);
+			userAnswers.put("getEffectiveName", (method, args) -> "user" + id);
+			userAnswers.put("openPrivateChannel", (method, args) -> restAction(method, () -> {
+				privateChannels.put(channelId, channel[0]);
+				return channel[0];
+			}));
+			user = entity(User.class, userAnswers);
+			users.put(id, user);
+
+			HashMap<String, Answer> channelAnswers = snowflake(channelId, Map.of());
+			channelAnswers.put("getType", (method, args) -> ChannelType.PRIVATE);
+			channelAnswers.put("getJDA", (method, args) -> jda);
+			channelAnswers.put("getUser", (method, args) -> user);
+			channelAnswers.put("asPrivateChannel", (method, args) -> channel[0]);
+			channelAnswers.put("sendMessageEmbeds", (method, args) -> restAction(method, () -> {
+				MessageEmbed embed = (MessageEmbed) args[0];
+				receive(embed.getTitle());
+				Message message = newMessage(channel[0], user, "");
+				lastBotMessage = message;
+				return message;
+			}));
+			channelAnswers.put("editMessageById", (method, args) -> restAction(method, () -> {
+				List<MessageEmbed> embeds = ((MessageEditData) args[1]).getEmbeds();
+				if(!embeds.isEmpty()) receive(embeds.get(0).getTitle());
+				return newMessage(channel[0], user, "");
+			}));
+			channel[0] = entity(PrivateChannel.class, new Class<?>[]{ MessageChannelUnion.class }, channelAnswers);
+			privateChannel = channel[0];
+		}
+
+		Message lastBotMessage() { return lastBotMessage; }
+
+		Message message(String content) { // A message from this user in their DM
+			return FakeDiscord.this.newMessage(privateChannel, user, content);
+		}
+
+		SlashCommandInteraction slashCommand(String name) {
+			return slashCommand(name, guilds.get(0));
+		}
+
+		SlashCommandInteraction slashCommand(String name, FakeGuild fakeGuild) {
+			HashMap<String, Answer> answers = interaction();
+			answers.put("getName", (method, args) -> name);
+			answers.put("getGuild", (method, args) -> fakeGuild.guild);
+			answers.put("deferReply", (method, args) -> restAction(method, () -> hook()));
+			return entity(SlashCommandInteraction.class, answers);
+		}
+
+		ButtonInteraction buttonClick(Button button, Message message) {
+			HashMap<String, Answer> answers = interaction();
+			answers.put("getChannel", (method, args) -> privateChannel);
+			answers.put("getMessage", (method, args) -> message);
+			answers.put("getComponent", (method, args) -> button);
+			answers.put("getButton", (method, args) -> button);
+			answers.put("getComponentId", (method, args) -> button.getId());
+			return entity(ButtonInteraction.class, answers);
+		}
+
+		StringSelectInteraction rankSelection(FakeUser applicant) { // This user judges the applicant's post in the first guild
+			Guild guild = guilds.get(0).guild;
+			Role rankRole = guilds.get(0).rankRole();
+			StringSelectMenu menu = StringSelectMenu.create(applicant.user.getId()).addOption(rankRole.getName(), rankRole.getId()).build();
+			HashMap<String, Answer> answers = interaction();
+			answers.put("getGuild", (method, args) -> guild);
+			answers.put("getValues", (method, args) -> List.of(rankRole.getId()));
+			answers.put("getSelectMenu", (method, args) -> menu);
+			answers.put("getComponent", (method, args) -> menu);
+			answers.put("deferReply", (method, args) -> restAction(method, () -> hook()));
+			return entity(StringSelectInteraction.class, answers);
+		}
+
+		private HashMap<String, Answer> interaction() {
+			HashMap<String, Answer> answers = snowflake(snowflakes.incrementAndGet(), Map.of());
+			answers.put("getUser", (method, args) -> user);
+			answers.put("getJDA", (method, args) -> jda);
+			answers.put("getHook", (method, args) -> hook());
+			answers.put("deferEdit", (method, args) -> restAction(method, () -> null));
+			return answers;
+		}
+
+		private InteractionHook hook() {
+			return entity(InteractionHook.class, Map.of(
+					"getJDA", (method, args) -> jda,
+					"sendMessage", (method, args) -> restAction(method, () -> {
+						receive(String.valueOf(args[0]));
+						return newMessage(null, null, String.valueOf(args[0]));
+					}),
+					"sendMessageEmbeds", (method, args) -> restAction(method, () -> {
+						receive(((MessageEmbed) args[0]).getTitle());
+						return newMessage(null, null, "");
+					})
+			));
+		}
+
+		private void receive(String text) {
+			inbox.add(new Reply(text, System.nanoTime()));
+		}
+
+	}
+
+	private Message newMessage(PrivateChannel channel, User author, String content) {
+		HashMap<String, Answer> answers = snowflake(snowflakes.incrementAndGet(), Map.of());
+		answers.put("getJDA", (method, args) -> jda);
+		answers.put("getChannel", (method, args) -> channel);
+		answers.put("getChannelType", (method, args) -> ChannelType.PRIVATE);
+		answers.put("getAuthor", (method, args) -> author);
+		answers.put("getContentRaw", (method, args) -> content);
+		answers.put("getContentDisplay", (method, args) -> content);
+		answers.put("getContentStripped", (method, args) -> content);
+		answers.put("getAttachments", (method, args) -> List.of());
+		answers.put("getButtons", (method, args) -> List.of(Button.success("send", "Send"), Button.danger("cancel", "Cancel")));
+		return entity(Message.class, answers);
+	}
+
+	// A RestAction of the method's return type, which completes with the result after the configured latency
+	private Object restAction(Method method, Supplier<Object> result) {
+		Class<?> actionType = method.getReturnType();
+		Object[] action = new Object[1];
+		action[0] = Proxy.newProxyInstance(FakeDiscord.class.getClassLoader(), new Class<?>[]{ actionType }, (proxy, actionMethod, args) -> {
+			switch(actionMethod.getName()) {
+				case "submit": return execute(result);
+				case "complete": return execute(result).join();
+				case "queue": {
+					Consumer<Object> success = args != null && args.length > 0 ? castConsumer(args[0]) : null;
+					Consumer<Throwable> failure = args != null && args.length > 1 ? castConsumer(args[1]) : null;
+					execute(result).whenComplete((value, throwable) -> {
+						if(throwable == null && success != null) success.accept(value);
+						if(throwable != null && failure != null) failure.accept(throwable instanceof CompletionException ? throwable.getCause() : throwable);
+					});
+					return null;
+				}
+				case "getJDA": return jda;
+				case "equals": return proxy == args[0];
+				case "hashCode": return System.identityHashCode(proxy);
+				case "toString": return actionType.getSimpleName();
+			}
+			if(actionMethod.isDefault()) return InvocationHandler.invokeDefault(proxy, actionMethod, args);
+			if(actionMethod.getReturnType().isInstance(proxy)) return proxy; // Builder calls carry on with the same action
+			return defaultValue(actionMethod.getReturnType());
+		});
+		return action[0];
+	}
+
+	private CompletableFuture<Object> execute(Supplier<Object> result) {
+		restCalls.increment();
+		CompletableFuture<Object> future = new CompletableFuture<>();
+		attempt(future, result, settings.latencyMicros());
+		return future;
+	}
+
+	private void attempt(CompletableFuture<Object> future, Supplier<Object> result, long delayMicros) {
+		rest.schedule(() -> {
+			ThreadLocalRandom random = ThreadLocalRandom.current();
+			if(random.nextDouble() < settings.rateLimitChance()) { // Held for the retry after, then sent again
+				rateLimits.increment();
+				attempt(future, result, TimeUnit.MILLISECONDS.toMicros(settings.retryAfterMillis()) + settings.latencyMicros());
+				return;
+			}
+			if(random.nextDouble() < settings.errorChance()) {
+				serverErrors.increment();
+				future.completeExceptionally(new IOException("Injected server error"));
+				return;
+			}
+			try {
+				future.complete(result.get());
+			} catch(RuntimeException e) {
+				future.completeExceptionally(e);
+			}
+		}, delayMicros, TimeUnit.MICROSECONDS);
+	}
+
+	@FunctionalInterface
+	interface Answer {
+		Object answer(Method method, Object[] args) throws Exception;
+	}
+
+	private static HashMap<String, Answer> snowflake(long id, Map<String, Answer> answers) {
+		HashMap<String, Answer> withId = new HashMap<>(answers);
+		withId.put("getIdLong", (method, args) -> id);
+		withId.put("getId", (method, args) -> Long.toUnsignedString(id));
+		withId.put("getAsMention", (method, args) -> "<@" + id + ">");
+		return withId;
+	}
+
+	private <T> T entity(Class<T> type, Map<String, Answer> answers) {
+		return entity(type, new Class<?>[0], answers);
+	}
+
+	// Answers by method name, falls back to the interface's own default methods, and returns empty values for the rest.
+	// Requests nobody answered still go through the fake REST layer and complete with nothing.
+	private <T> T entity(Class<T> type, Class<?>[] extraTypes, Map<String, Answer> answers) {
+		Class<?>[] types = new Class<?>[extraTypes.length + 1];
+		types[0] = type;
+		System.arraycopy(extraTypes, 0, types, 1, extraTypes.length);
+		Object entity = Proxy.newProxyInstance(FakeDiscord.class.getClassLoader(), types, (proxy, method, args) -> {
+			Answer answer = answers.get(method.getName());
+			if(answer != null) return answer.answer(method, args);
+			switch(method.getName()) {
+				case "equals": return proxy == args[0];
+				case "hashCode": return System.identityHashCode(proxy);
+				case "toString": return type.getSimpleName();
+			}
+			if(method.isDefault()) return InvocationHandler.invokeDefault(proxy, method, args);
+			if(RestAction.class.isAssignableFrom(method.getReturnType())) return restAction(method, () -> null);
+			return defaultValue(method.getReturnType());
+		});
+		return type.cast(entity);
+	}
+
+	private static Object defaultValue(Class<?> type) {
+		if(type == boolean.class) return false;
+		if(type == int.class) return 0;
+		if(type == long.class) return 0L;
+		if(type == double.class) return 0.0;
+		if(type == float.class) return 0f;
+		if(type == List.class) return List.of();
+		return null;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> Consumer<T> castConsumer(Object consumer) {
+		return (Consumer<T>) consumer;
+	}
+
+}
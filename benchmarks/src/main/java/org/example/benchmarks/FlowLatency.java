@@ -0,0 +1,174 @@
+package org.example.benchmarks;
+
+import net.dv8tion.jda.api.events.GenericEvent;
+import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
+import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
+import net.dv8tion.jda.api.hooks.InterfacedEventManager;
+import net.dv8tion.jda.api.interactions.commands.build.Commands;
+import org.example.commands.CommandRouter;
+import org.example.guilds.GuildContexts;
+import org.example.listeners.ApplicationListener;
+import org.example.metrics.LatencyHistogram;
+import org.example.metrics.Metrics;
+import org.example.outbound.Outbox;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+public class FlowLatency {
+
+	// Runs the apply, send and cancel flows end to end against FakeDiscord at several injected REST latencies, with
+	// every event handed to the listeners on one thread, the way JDA's default event manager does. Each flow is timed
+	// from its event until the bot's final answer reaches the user, and each event from when the thread picked it up
+	// until the listeners gave it back. A flow that blocked on Discord would hold that one thread for a round trip
+	// per call and stall everyone queued behind it, so the run fails when any event held the thread for as long as
+	// a single request takes, or when a flow never finished.
+	// "java -cp target/benchmarks.jar org.example.benchmarks.FlowLatency [users] [latency ms...]"
+
+	private static final long REPLY_TIMEOUT_MILLIS = 20_000;
+	private static final long FIRST_GUILD_ID = 1_180_000_000_000_000_000L;
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int users = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+		List<Long> latencies = args.length > 1 ? Stream.of(args).skip(1).map(Long::parseLong).toList() : List.of(0L, 50L, 200L);
+
+		for(String command : new String[]{ "apply", "send", "cancel" }) { // Every user goes through each flow back to back
+			System.setProperty("overture.limit." + command, "1000/1");
+		}
+
+		ArrayList<String> failures = new ArrayList<>();
+		System.out.printf("%,d users, one event thread%n", users);
+		System.out.printf("%-10s %-7s %10s %8s %10s %10s %10s%n", "latency", "flow", "completed", "timeouts", "p50 ms", "p99 ms", "max ms");
+		for(int i = 0; i < latencies.size(); i++) {
+			run(FIRST_GUILD_ID + i, users, latencies.get(i), failures);
+		}
+
+		System.out.printf("%d failed%n", failures.size());
+		failures.forEach(failure -> System.out.println("  " + failure));
+		System.exit(failures.isEmpty() ? 0 : 1); // The expiry wheel and outbox threads would otherwise keep running
+	}
+
+	private static void run(long guildId, int users, long latencyMillis, List<String> failures) throws IOException, InterruptedException {
+		Path directory = Files.createTempDirectory("overture-flows");
+		Path guildDirectory = Files.createDirectories(directory.resolve(String.valueOf(guildId)));
+		FakeDiscord discord = new FakeDiscord(new FakeDiscord.Settings(TimeUnit.MILLISECONDS.toMicros(latencyMillis), 0, 0, 0), guildId);
+		Files.writeString(guildDirectory.resolve("roleIDs.txt"), "RoleID, EmojiID\n" + discord.rankRole().getId() + ", 1\n", StandardCharsets.UTF_8); // Application posts need a rank to offer
+
+		GuildContexts guildContexts = new GuildContexts(directory.toFile());
+		InterfacedEventManager eventManager = new InterfacedEventManager();
+		eventManager.register(guildContexts);
+		ApplicationListener applicationListener = new ApplicationListener(guildContexts, new Outbox());
+		eventManager.register(applicationListener);
+		eventManager.register(new CommandRouter().route(Commands.slash("apply", "Apply for a new creator skill role."), applicationListener::onApply, 16, 256));
+		guildContexts.get(discord.guild());
+
+		String run = latencyMillis + "ms";
+		Flow apply = new Flow(run, "apply");
+		Flow send = new Flow(run, "send");
+		Flow cancel = new Flow(run, "cancel");
+		Flow held = new Flow(run, "held"); // Time each event held the event thread
+		ExecutorService eventThread = Executors.newSingleThreadExecutor();
+		EventSink events = event -> eventThread.execute(() -> {
+			long startTime = System.nanoTime();
+			eventManager.handle(event);
+			held.latency.recordSince(startTime);
+		});
+
+		try(ExecutorService userThreads = Executors.newVirtualThreadPerTaskExecutor()) {
+			for(int i = 0; i < users; i++) {
+				FakeDiscord.FakeUser user = discord.user();
+				userThreads.execute(() -> {
+					try {
+						if(startSession(events, user, apply)) {
+							events.handle(new MessageReceivedEvent(user.user.getJDA(), 0, user.message("https://youtu.be/" + Long.toHexString(user.id))));
+							long sendTime = System.nanoTime();
+							events.handle(new MessageReceivedEvent(user.user.getJDA(), 0, user.message("send")));
+							send.record(awaitReply(user, text -> text.startsWith("Application submitted")), sendTime);
+						}
+						if(startSession(events, user, apply)) {
+							long cancelTime = System.nanoTime();
+							events.handle(new MessageReceivedEvent(user.user.getJDA(), 0, user.message("cancel")));
+							cancel.record(awaitReply(user, text -> text.startsWith("Application process cancelled")), cancelTime);
+						}
+					} catch(InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				});
+			}
+		}
+		eventThread.shutdown();
+
+		for(Flow flow : new Flow[]{ apply, send, cancel, held }) {
+			flow.print(run);
+			if(flow.timeouts.sum() > 0) failures.add(run + ": " + flow.timeouts.sum() + " " + flow.name + " flows never finished");
+		}
+		if(latencyMillis > 0 && held.latency.getMaxMillis() >= latencyMillis) { // Disk writes may hold it, a REST round trip may not
+			failures.add(run + ": an event held the event thread for " + held.latency.getMaxMillis() + " ms");
+		}
+
+		discord.shutdown();
+		try(Stream<Path> files = Files.walk(directory)) {
+			files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+		}
+	}
+
+	private static boolean startSession(EventSink events, FakeDiscord.FakeUser user, Flow apply) throws InterruptedException {
+		user.inbox.clear();
+		long applyTime = System.nanoTime();
+		events.handle(new SlashCommandInteractionEvent(user.user.getJDA(), 0, user.slashCommand("apply")));
+		return apply.record(awaitReply(user, text -> text.startsWith("Application process initiated")), applyTime);
+	}
+
+	private static FakeDiscord.Reply awaitReply(FakeDiscord.FakeUser user, Predicate<String> isAnswer) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(REPLY_TIMEOUT_MILLIS);
+		while(true) {
+			FakeDiscord.Reply reply = user.inbox.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+			if(reply == null || (reply.text() != null && isAnswer.test(reply.text()))) return reply;
+		}
+	}
+
+	@FunctionalInterface
+	private interface EventSink {
+		void handle(GenericEvent event);
+	}
+
+	private static final class Flow {
+
+		private final String name;
+		private final LatencyHistogram latency;
+		private final LongAdder timeouts = new LongAdder();
+
+		private Flow(String run, String name) {
+			this.name = name;
+			latency = Metrics.histogram("flowlatency_" + run + "_" + name + "_seconds", "Flow latency " + name + " at " + run);
+		}
+
+		private boolean record(FakeDiscord.Reply reply, long startTime) { // True when the flow finished
+			if(reply == null) {
+				timeouts.increment();
+				return false;
+			}
+			latency.record(reply.nanoTime() - startTime);
+			return true;
+		}
+
+		private void print(String run) {
+			System.out.printf("%-10s %-7s %,10d %8d %10.1f %10.1f %10.1f%n", run, name, latency.getCount(), timeouts.sum(),
+					latency.getP50Millis(), latency.getP99Millis(), latency.getMaxMillis());
+		}
+
+	}
+
+}
@@ -0,0 +1,281 @@
+package org.example.benchmarks;
+
+import net.dv8tion.jda.api.entities.Role;
+import net.dv8tion.jda.api.events.guild.GuildReadyEvent;
+import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
+import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
+import net.dv8tion.jda.api.interactions.commands.build.Commands;
+import net.dv8tion.jda.api.interactions.components.selections.SelectOption;
+import org.example.commands.CommandRouter;
+import org.example.guilds.GuildContext;
+import org.example.guilds.GuildContexts;
+import org.example.ids.idmanagers.TimedIDManager;
+import org.example.ids.sessions.SessionRecord;
+import org.example.launch.VirtualThreadEventManager;
+import org.example.listeners.ApplicationListener;
+import org.example.metrics.Metrics;
+import org.example.outbound.Outbox;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+public class GuildIsolation {
+
+	// Makes several FakeDiscord guilds ready at once, so GuildContexts loads them concurrently on the production event
+	// manager, then runs applications and adds a rank in every guild at the same time. Each guild must come out with its
+	// own folder and files, its own session manager and key locks, a rank menu and snapshot holding only its own ranks,
+	// and exactly its own applicants' posts in its own applications forum. No guild's files may mention another guild's
+	// ranks, emojis or applicants. Exits non-zero when any guild saw another's data.
+	// "java -cp target/benchmarks.jar org.example.benchmarks.GuildIsolation [guilds] [users per guild]"
+
+	private static final long FIRST_GUILD_ID = 1_190_000_000_000_000_000L;
+	private static final long TIMEOUT_MILLIS = 20_000;
+	private static final long LOCK_WAIT_MILLIS = 500; // Far longer than a store write takes when nothing holds the lock
+
+	public static void main(String[] args) throws IOException, InterruptedException, ReflectiveOperationException {
+		int guildCount = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+		int usersPerGuild = args.length > 1 ? Integer.parseInt(args[1]) : 25;
+
+		Path directory = Files.createTempDirectory("overture-guilds");
+		FakeDiscord discord = new FakeDiscord(new FakeDiscord.Settings(TimeUnit.MILLISECONDS.toMicros(5), 0, 0, 0), FIRST_GUILD_ID, guildCount, 2);
+		for(FakeDiscord.FakeGuild fakeGuild : discord.guilds()) { // Each guild starts out with its first rank, the second is added while running
+			Path guildDirectory = Files.createDirectories(directory.resolve(fakeGuild.guild().getId()));
+			Files.writeString(guildDirectory.resolve("roleIDs.txt"), fakeGuild.rankFile(1), StandardCharsets.UTF_8);
+		}
+
+		GuildContexts guildContexts = new GuildContexts(directory.toFile());
+		VirtualThreadEventManager eventManager = new VirtualThreadEventManager();
+		eventManager.register(guildContexts);
+		ApplicationListener applicationListener = new ApplicationListener(guildContexts, new Outbox());
+		eventManager.register(applicationListener);
+		eventManager.register(new CommandRouter().route(Commands.slash("apply", "Apply for a new creator skill role."), applicationListener::onApply, 16, 256));
+
+		ArrayList<String> failures = new ArrayList<>();
+		long startLoads = Metrics.histogram("overture_guild_load_seconds", "").getCount();
+		long startTime = System.nanoTime();
+		for(FakeDiscord.FakeGuild fakeGuild : discord.guilds()) { // Every guild becomes ready at once, as they do when a shard logs in
+			eventManager.handle(new GuildReadyEvent(discord.jda(), 0, fakeGuild.guild()));
+		}
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS);
+		while(Metrics.histogram("overture_guild_load_seconds", "").getCount() - startLoads < guildCount && System.nanoTime() < deadline) { // Asking first would load it here
+			Thread.sleep(1);
+		}
+		System.out.printf("%d guilds loaded together in %.1f ms%n", guildCount, (System.nanoTime() - startTime) / 1e6);
+
+		HashMap<FakeDiscord.FakeGuild, GuildContext> contexts = new HashMap<>();
+		for(FakeDiscord.FakeGuild fakeGuild : discord.guilds()) {
+			contexts.put(fakeGuild, guildContexts.get(fakeGuild.guild()));
+		}
+		checkStores(discord, contexts, directory, failures);
+		checkLocks(discord, contexts, failures);
+
+		// Applications in every guild and a new rank in each, all at the same time
+		HashMap<FakeDiscord.FakeGuild, List<FakeDiscord.FakeUser>> applicants = new HashMap<>();
+		ConcurrentLinkedQueue<String> flowFailures = new ConcurrentLinkedQueue<>();
+		try(ExecutorService userThreads = Executors.newVirtualThreadPerTaskExecutor()) {
+			for(FakeDiscord.FakeGuild fakeGuild : discord.guilds()) {
+				GuildContext context = contexts.get(fakeGuild);
+				userThreads.execute(() -> {
+					try {
+						context.getRankRegistry().addRank(fakeGuild.rankRoles.get(1), fakeGuild.rankEmojis.get(1));
+					} catch(IOException e) {
+						flowFailures.add(fakeGuild.guild().getId() + ": adding a rank failed with " + e);
+					}
+				});
+
+				ArrayList<FakeDiscord.FakeUser> users = new ArrayList<>();
+				for(int i = 0; i < usersPerGuild; i++) {
+					FakeDiscord.FakeUser user = discord.user();
+					users.add(user);
+					userThreads.execute(() -> apply(eventManager, fakeGuild, user, contexts, flowFailures));
+				}
+				applicants.put(fakeGuild, users);
+			}
+		}
+		failures.addAll(flowFailures);
+
+		for(FakeDiscord.FakeGuild fakeGuild : discord.guilds()) {
+			checkGuild(discord, fakeGuild, contexts.get(fakeGuild), applicants, directory, failures);
+		}
+
+		System.out.printf("%d guilds, %d applicants each, %d failed%n", guildCount, usersPerGuild, failures.size());
+		failures.forEach(failure -> System.out.println("  " + failure));
+		discord.shutdown();
+		try(Stream<Path> files = Files.walk(directory)) {
+			files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+		}
+		System.exit(failures.isEmpty() ? 0 : 1); // The expiry wheel and outbox threads would otherwise keep running
+	}
+
+	// Applies in the user's guild, checks no other guild's session store took the session, then sends a link
+	private static void apply(VirtualThreadEventManager eventManager, FakeDiscord.FakeGuild fakeGuild, FakeDiscord.FakeUser user,
+			HashMap<FakeDiscord.FakeGuild, GuildContext> contexts, ConcurrentLinkedQueue<String> failures) {
+		String name = fakeGuild.guild().getId() + "/" + user.user.getName();
+		try {
+			eventManager.handle(new SlashCommandInteractionEvent(user.user.getJDA(), 0, user.slashCommand("apply", fakeGuild)));
+			if(awaitReply(user, text -> text.startsWith("Application process initiated")) == null) {
+				failures.add(name + ": /apply never answered");
+				return;
+			}
+			String userDmId = user.privateChannel.getId();
+			contexts.forEach((otherGuild, context) -> {
+				if(context.getSessionManager().containsKey(userDmId) != (otherGuild == fakeGuild)) {
+					failures.add(name + ": session " + (otherGuild == fakeGuild ? "missing from its own guild" : "found in guild " + otherGuild.guild().getId()));
+				}
+			});
+
+			eventManager.handle(new MessageReceivedEvent(user.user.getJDA(), 0, user.message("https://youtu.be/" + Long.toHexString(user.id))));
+			eventManager.handle(new MessageReceivedEvent(user.user.getJDA(), 0, user.message("send")));
+			if(awaitReply(user, text -> text.startsWith("Application submitted")) == null) failures.add(name + ": send never answered");
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	// Every guild has its own folder holding its own stores, and its own session manager
+	private static void checkStores(FakeDiscord discord, HashMap<FakeDiscord.FakeGuild, GuildContext> contexts, Path directory, List<String> failures) {
+		Set<TimedIDManager> sessionManagers = Collections.newSetFromMap(new IdentityHashMap<>());
+		for(FakeDiscord.FakeGuild fakeGuild : discord.guilds()) {
+			GuildContext context = contexts.get(fakeGuild);
+			String guildId = fakeGuild.guild().getId();
+			if(context.getGuildId() != fakeGuild.guild().getIdLong()) failures.add(guildId + ": got the context of guild " + context.getGuildId());
+			if(context.getApplicationChannel() == null) failures.add(guildId + ": no applications forum");
+			for(String fileName : new String[]{ "sessionIDs.txt", "roleIDs.txt", "rankSnapshot.txt", "iconHashes.txt" }) {
+				if(!Files.exists(directory.resolve(guildId).resolve(fileName))) failures.add(guildId + ": " + fileName + " missing from its folder");
+			}
+			sessionManagers.add(context.getSessionManager());
+		}
+		if(sessionManagers.size() != contexts.size()) failures.add(contexts.size() + " guilds share " + sessionManagers.size() + " session managers");
+	}
+
+	// No two guilds share a key lock. While every lock of one guild is held, the same key still writes at once in another
+	// guild, and only goes through in the held guild once its locks are let go.
+	private static void checkLocks(FakeDiscord discord, HashMap<FakeDiscord.FakeGuild, GuildContext> contexts, List<String> failures) throws InterruptedException, ReflectiveOperationException {
+		Field keyLocksField = TimedIDManager.class.getDeclaredField("keyLocks");
+		keyLocksField.setAccessible(true);
+		Set<ReentrantLock> locks = Collections.newSetFromMap(new IdentityHashMap<>());
+		int lockCount = 0;
+		for(GuildContext context : contexts.values()) {
+			ReentrantLock[] keyLocks = (ReentrantLock[]) keyLocksField.get(context.getSessionManager());
+			locks.addAll(List.of(keyLocks));
+			lockCount += keyLocks.length;
+		}
+		if(locks.size() != lockCount) failures.add(lockCount + " key locks across the guilds, only " + locks.size() + " distinct");
+		if(discord.guilds().size() < 2) return;
+
+		TimedIDManager held = contexts.get(discord.guilds().get(0)).getSessionManager();
+		TimedIDManager free = contexts.get(discord.guilds().get(1)).getSessionManager();
+		String[] session = new SessionRecord(1_100_000_000_000_000_000L, 1, System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(10), 1, List.of()).toEntry();
+		ReentrantLock[] heldLocks = (ReentrantLock[]) keyLocksField.get(held);
+		for(ReentrantLock lock : heldLocks) {
+			lock.lock();
+		}
+		CompletableFuture<Void> heldWrite;
+		try {
+			CompletableFuture<Void> freeWrite = CompletableFuture.runAsync(() -> write(free, session));
+			heldWrite = CompletableFuture.runAsync(() -> write(held, session));
+			try {
+				freeWrite.get(LOCK_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+			} catch(Exception e) {
+				failures.add("a write in guild " + discord.guilds().get(1).guild().getId() + " waited on the locks of guild " + discord.guilds().get(0).guild().getId());
+			}
+			Thread.sleep(LOCK_WAIT_MILLIS);
+			if(heldWrite.isDone()) failures.add("a write went through while its own guild's key lock was held");
+		} finally {
+			for(ReentrantLock lock : heldLocks) {
+				lock.unlock();
+			}
+		}
+		heldWrite.orTimeout(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS).exceptionally(throwable -> {
+			failures.add("a held write never went through after its locks were let go: " + throwable);
+			return null;
+		}).join();
+		try {
+			held.deleteEntry(session[0]);
+			free.deleteEntry(session[0]);
+		} catch(IOException e) {
+			failures.add("cleaning up the lock check failed with " + e);
+		}
+	}
+
+	private static void write(TimedIDManager sessionManager, String[] session) {
+		try {
+			sessionManager.appendEntry(session);
+		} catch(IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	// The guild's forum holds exactly its own applicants' posts, its menu and snapshot exactly its own ranks, and
+	// nothing in its folder names another guild's ranks, emojis or applicants
+	private static void checkGuild(FakeDiscord discord, FakeDiscord.FakeGuild fakeGuild, GuildContext context,
+			HashMap<FakeDiscord.FakeGuild, List<FakeDiscord.FakeUser>> applicants, Path directory, List<String> failures) throws IOException {
+		String guildId = fakeGuild.guild().getId();
+		List<String> expectedPosts = applicants.get(fakeGuild).stream().map(user -> user.user.getName() + "'s Application").sorted().toList();
+		List<String> posts = fakeGuild.posts.stream().sorted().toList();
+		if(!posts.equals(expectedPosts)) failures.add(guildId + ": forum holds " + posts.size() + " posts, " + expectedPosts.size() + " expected, or not its own applicants'");
+		if(context.getApplicationChannel() != fakeGuild.guild().getForumChannelsByName("applications", true).get(0)) {
+			failures.add(guildId + ": application channel is not its own forum");
+		}
+
+		List<String> menuRoleIds = context.getRankRegistry().getMenuOptions().stream().map(SelectOption::getValue).toList();
+		List<String> ownRoleIds = fakeGuild.rankRoles.stream().map(Role::getId).toList();
+		if(!menuRoleIds.equals(ownRoleIds)) failures.add(guildId + ": menu offers " + menuRoleIds + ", expected " + ownRoleIds);
+		HashMap<String, String> files = new HashMap<>(); // Every store, journal and snapshot the guild wrote, by name
+		Path guildDirectory = directory.resolve(guildId);
+		if(Files.isDirectory(guildDirectory)) { // A missing folder was already reported
+			try(Stream<Path> guildFiles = Files.list(guildDirectory)) {
+				for(Path file : guildFiles.toList()) {
+					files.put(file.getFileName().toString(), new String(Files.readAllBytes(file), StandardCharsets.ISO_8859_1));
+				}
+			}
+		}
+		String snapshot = files.getOrDefault("rankSnapshot.txt", "");
+		for(int i = 0; i < fakeGuild.rankEmojis.size(); i++) {
+			if(!snapshot.contains(fakeGuild.rankEmojis.get(i).getId())) failures.add(guildId + ": snapshot is missing its rank emoji " + (i + 1));
+		}
+
+		String allFiles = String.join("\n", files.values());
+		for(String roleId : ownRoleIds) {
+			if(!allFiles.contains(roleId)) failures.add(guildId + ": rank " + roleId + " missing from its rank files");
+		}
+		for(FakeDiscord.FakeGuild otherGuild : discord.guilds()) {
+			if(otherGuild == fakeGuild) continue;
+			ArrayList<String> foreignIds = new ArrayList<>();
+			otherGuild.rankRoles.forEach(role -> foreignIds.add(role.getId()));
+			otherGuild.rankEmojis.forEach(emoji -> foreignIds.add(emoji.getId()));
+			applicants.get(otherGuild).forEach(user -> foreignIds.add(user.privateChannel.getId()));
+			for(String foreignId : foreignIds) {
+				if(allFiles.contains(foreignId)) failures.add(guildId + ": its files mention " + foreignId + " from guild " + otherGuild.guild().getId());
+			}
+		}
+	}
+
+	private static FakeDiscord.Reply awaitReply(FakeDiscord.FakeUser user, Predicate<String> isAnswer) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS);
+		while(true) {
+			FakeDiscord.Reply reply = user.inbox.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+			if(reply == null || (reply.text() != null && isAnswer.test(reply.text()))) return reply;
+		}
+	}
+
+}
@@ -0,0 +1,50 @@
+package org.example.benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.function.IntToLongFunction;
+
+final class IDFiles {
+
+	// Builds throwaway id files shaped like sessionIDs.txt so the stores can be measured at any size
+
+	static final String LABELS = "SessionChannelID, ApplicationMessageID, Timeout, VideoLinks";
+	static final String NUMERIC_LABELS = "SessionChannelID, ApplicationMessageID, Timeout"; // Without the free text column, for stores that only hold numbers
+
+	private IDFiles() {}
+
+	static File createSessionFile(int entries, long timeout) throws IOException {
+		return createSessionFile(entries, i -> timeout);
+	}
+
+	static File createSessionFile(int entries, IntToLongFunction timeouts) throws IOException {
+		return createSessionFile(entries, timeouts, LABELS);
+	}
+
+	static File createSessionFile(int entries, IntToLongFunction timeouts, String labels) throws IOException {
+		File file = Files.createTempFile("sessionIDs", ".txt").toFile();
+		file.deleteOnExit();
+		new File(file.getPath() + ".journal").deleteOnExit();
+		new File(file.getPath() + ".mv").deleteOnExit();
+		new File(file.getPath() + ".bin").deleteOnExit();
+		try(BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
+			writer.append(labels).append("\n");
+			for(int i = 0; i < entries; i++) {
+				writer.append(String.join(", ", sessionEntry(i, timeouts.applyAsLong(i)))).append("\n");
+			}
+		}
+		return file;
+	}
+
+	static String sessionKey(int i) {
+		return String.valueOf(1_100_000_000_000_000_000L + i);
+	}
+
+	static String[] sessionEntry(int i, long timeout) {
+		return new String[]{ sessionKey(i), String.valueOf(1_200_000_000_000_000_000L + i), String.valueOf(timeout) };
+	}
+
+}
@@ -0,0 +1,76 @@
+package org.example.benchmarks;
+
+import org.example.ids.idmanagers.IDManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IDManagerBenchmark {
+
+	@Param({ "10", "1000", "100000", "1000000" })
+	public int entries;
+
+	private File idFile;
+	private IDManager idManager;
+	private int nextKey;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		idFile = IDFiles.createSessionFile(entries, Long.MAX_VALUE);
+		idManager = new IDManager(idFile, 0);
+		nextKey = entries;
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		idFile.delete();
+	}
+
+	@Benchmark
+	public boolean containsKey() {
+		return idManager.containsKey(IDFiles.sessionKey(ThreadLocalRandom.current().nextInt(entries)));
+	}
+
+	@Benchmark
+	public String[] readForEntry() {
+		return idManager.readForEntry(IDFiles.sessionKey(ThreadLocalRandom.current().nextInt(entries)));
+	}
+
+	@Benchmark
+	public void appendEntry() throws IOException {
+		idManager.appendEntry(IDFiles.sessionEntry(nextKey++, Long.MAX_VALUE));
+	}
+
+	@Benchmark
+	public String[] deleteEntry() throws IOException { // Deletes an existing entry and puts it back so the size stays put
+		int i = ThreadLocalRandom.current().nextInt(entries);
+		String[] entryArray = idManager.readAndDeleteEntry(IDFiles.sessionKey(i));
+		idManager.appendEntry(IDFiles.sessionEntry(i, Long.MAX_VALUE));
+		return entryArray;
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public LinkedList<String[]> dump() {
+		return idManager.dump(false);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public IDManager load() { // Cold start cost of reading the file into the index
+		return new IDManager(idFile, 0);
+	}
+
+}
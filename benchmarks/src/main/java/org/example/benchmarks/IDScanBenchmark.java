@@ -0,0 +1,91 @@
+package org.example.benchmarks;
+
+import org.example.ids.idmanagers.IDManager;
+import org.example.ids.stores.IDStores;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedList;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = { "-Xmx2g" })
+public class IDScanBenchmark {
+
+	// Reading a whole store through dump against the lazy stream. The first pair is time to first entry, the rest find
+	// the soonest one percent (entry i expires at i) by copying everything first, then lazily, then lazily in parallel.
+	// Run with "-prof gc" to compare the heap each allocates per operation.
+
+	@Param({ IDStores.FLAT_FILE, IDStores.MVSTORE, IDStores.MAPPED })
+	public String backend;
+
+	@Param({ "1000", "100000", "1000000" })
+	public int entries;
+
+	private File idFile;
+	private IDManager idManager;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		try {
+			idFile = IDFiles.createSessionFile(entries, i -> i, IDFiles.NUMERIC_LABELS); // Numeric columns only, so every backend can hold it
+		} catch(IOException e) {
+			throw new RuntimeException(e);
+		}
+		String previousBackend = System.setProperty(IDStores.BACKEND_PROPERTY, backend);
+		try {
+			idManager = new IDManager(idFile, 0);
+		} finally {
+			if(previousBackend == null) System.clearProperty(IDStores.BACKEND_PROPERTY);
+			else System.setProperty(IDStores.BACKEND_PROPERTY, previousBackend);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		idFile.delete();
+		new File(idFile.getPath() + ".journal").delete();
+		new File(idFile.getPath() + ".mv").delete();
+		new File(idFile.getPath() + ".bin").delete();
+	}
+
+	@Benchmark
+	public String[] firstEntryDump() {
+		return idManager.dump(false).getFirst();
+	}
+
+	@Benchmark
+	public Optional<String[]> firstEntryStream() {
+		return idManager.stream().findFirst();
+	}
+
+	@Benchmark
+	public long filterDump() {
+		long limit = entries / 100;
+		LinkedList<String[]> entryList = idManager.dump(false);
+		long count = 0;
+		for(String[] entryArray : entryList) {
+			if(Long.parseLong(entryArray[2].strip()) <= limit) count++;
+		}
+		return count;
+	}
+
+	@Benchmark
+	public long filterStream() {
+		long limit = entries / 100;
+		return idManager.stream().filter(entryArray -> Long.parseLong(entryArray[2].strip()) <= limit).count();
+	}
+
+	@Benchmark
+	public long filterParallelStream() {
+		long limit = entries / 100;
+		return idManager.stream().parallel().filter(entryArray -> Long.parseLong(entryArray[2].strip()) <= limit).count();
+	}
+
+}
@@ -0,0 +1,91 @@
+package org.example.benchmarks;
+
+import org.example.ids.stores.IDStore;
+import org.example.ids.stores.IDStores;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IDStoreBenchmark {
+
+	// The same operations against every id store backend. Entry i expires at i, so an expiry scan up to
+	// entries / 100 finds the soonest one percent. The mapped backend writes each put through to disk before it returns.
+
+	@Param({ IDStores.FLAT_FILE, IDStores.MVSTORE, IDStores.MAPPED })
+	public String backend;
+
+	@Param({ "1000", "100000", "1000000" })
+	public int entries;
+
+	private File idFile;
+	private IDStore store;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		idFile = IDFiles.createSessionFile(entries, i -> i, IDFiles.NUMERIC_LABELS); // Numeric columns only, so every backend can hold it
+		store = open();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		store.close();
+		idFile.delete();
+		new File(idFile.getPath() + ".journal").delete();
+		new File(idFile.getPath() + ".mv").delete();
+		new File(idFile.getPath() + ".bin").delete();
+	}
+
+	@Benchmark
+	public String[] get() {
+		return store.get(IDFiles.sessionKey(ThreadLocalRandom.current().nextInt(entries)));
+	}
+
+	@Benchmark
+	public void put() throws IOException { // Replaces an existing entry so the size stays put
+		int i = ThreadLocalRandom.current().nextInt(entries);
+		store.put(IDFiles.sessionEntry(i, i));
+	}
+
+	@Benchmark
+	public String[] deleteAndPut() throws IOException {
+		int i = ThreadLocalRandom.current().nextInt(entries);
+		String[] entryArray = store.delete(IDFiles.sessionKey(i));
+		store.put(IDFiles.sessionEntry(i, i));
+		return entryArray;
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public void scanExpiring(Blackhole blackhole) {
+		store.scanExpiring(entries / 100, blackhole::consume);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public void scan(Blackhole blackhole) {
+		store.scan(blackhole::consume);
+	}
+
+	private IDStore open() {
+		String previousBackend = System.setProperty(IDStores.BACKEND_PROPERTY, backend);
+		try {
+			return IDStores.open(idFile, 0, 2);
+		} finally {
+			if(previousBackend == null) System.clearProperty(IDStores.BACKEND_PROPERTY);
+			else System.setProperty(IDStores.BACKEND_PROPERTY, previousBackend);
+		}
+	}
+
+}
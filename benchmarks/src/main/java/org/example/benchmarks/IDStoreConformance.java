@@ -0,0 +1,298 @@
+package org.example.benchmarks;
+
+import org.example.ids.sessions.SessionRecord;
+import org.example.ids.stores.FlatFileIDStore;
+import org.example.ids.stores.IDStore;
+import org.example.ids.stores.MVStoreIDStore;
+import org.example.ids.stores.MappedIDStore;
+import org.example.ids.stores.SessionIDStore;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+public class IDStoreConformance {
+
+	// Runs the same checks of the IDStore contract against every backend: reads see writes, rows padded by hand still
+	// load, a replaced entry keeps its place, scans are in insertion order and expiry scans soonest first, bulk deletes
+	// only take what their condition allows, everything survives a reopen, and concurrent updates to one key never lose
+	// a write. Rows are numeric and shaped like sessions so every backend can hold them. Backends with a text journal
+	// are also checked for recovering from a record torn by a crash. Exits non-zero when any check fails.
+	// "java -cp target/benchmarks.jar org.example.benchmarks.IDStoreConformance [backend...]"
+
+	private static final int KEY_INDEX = SessionRecord.CHANNEL_INDEX;
+	private static final int COUNTER_INDEX = SessionRecord.MESSAGE_INDEX; // Concurrent updates count up in this column
+	private static final int EXPIRY_INDEX = SessionRecord.EXPIRY_INDEX;
+	private static final int LOADED_ENTRIES = 100;
+	private static final int UPDATE_THREADS = 8;
+	private static final int UPDATES_PER_THREAD = 500;
+
+	private static final LinkedHashMap<String, Function<File, IDStore>> BACKENDS = new LinkedHashMap<>();
+	static {
+		BACKENDS.put("flat", idFile -> new FlatFileIDStore(idFile, KEY_INDEX, EXPIRY_INDEX));
+		BACKENDS.put("mvstore", idFile -> MVStoreIDStore.open(idFile, KEY_INDEX, EXPIRY_INDEX));
+		BACKENDS.put("mapped", idFile -> MappedIDStore.open(idFile, KEY_INDEX, EXPIRY_INDEX));
+		BACKENDS.put("session", SessionIDStore::new);
+	}
+	private static final Set<String> JOURNALLED_BACKENDS = Set.of("flat", "session");
+
+	private static final ArrayList<String> failures = new ArrayList<>();
+	private static int checks;
+
+	public static void main(String[] args) throws Exception {
+		List<String> backends = args.length > 0 ? List.of(args) : List.copyOf(BACKENDS.keySet());
+		for(String backend : backends) {
+			Function<File, IDStore> opener = BACKENDS.get(backend);
+			if(opener == null) throw new IllegalArgumentException("Unknown backend " + backend + ", expected one of " + BACKENDS.keySet());
+			int failuresBefore = failures.size();
+			run(backend, opener);
+			System.out.printf("%-8s %s%n", backend, failures.size() == failuresBefore ? "ok" : (failures.size() - failuresBefore) + " failed");
+		}
+
+		System.out.printf("%d checks, %d failed%n", checks, failures.size());
+		failures.forEach(failure -> System.out.println("  " + failure));
+		System.exit(failures.isEmpty() ? 0 : 1);
+	}
+
+	private static void run(String backend, Function<File, IDStore> opener) throws Exception {
+		for(Check check : List.<Check>of(
+				IDStoreConformance::readsSeeWrites,
+				IDStoreConformance::loadsPaddedRows,
+				IDStoreConformance::scansInInsertionOrder,
+				IDStoreConformance::scansExpiringSoonestFirst,
+				IDStoreConformance::deletesOnlyWhatTheConditionAllows,
+				IDStoreConformance::survivesReopen,
+				IDStoreConformance::updatesAreAtomicPerKey,
+				IDStoreConformance::recoversFromTornJournal
+		)) {
+			File idFile = IDFiles.createSessionFile(LOADED_ENTRIES, i -> 1_000 + i, IDFiles.NUMERIC_LABELS);
+			try {
+				check.run(backend, idFile, opener);
+			} catch(Exception | AssertionError e) {
+				fail(backend, "threw " + e);
+			} finally {
+				deleteStoreFiles(idFile);
+			}
+		}
+	}
+
+	private static void readsSeeWrites(String backend, File idFile, Function<File, IDStore> opener) throws IOException {
+		try(IDStore store = opener.apply(idFile)) {
+			check(backend, "labels are kept", Arrays.equals(store.getLabels(), IDFiles.NUMERIC_LABELS.split(", ")));
+			check(backend, "loaded entries are counted", store.size() == LOADED_ENTRIES);
+			check(backend, "loaded entries can be read", Arrays.equals(store.get(IDFiles.sessionKey(7)), IDFiles.sessionEntry(7, 1_007)));
+
+			String[] entry = IDFiles.sessionEntry(LOADED_ENTRIES, 5);
+			store.put(entry);
+			check(backend, "a put can be read back", Arrays.equals(store.get(entry[KEY_INDEX]), entry));
+			check(backend, "a put is contained", store.contains(entry[KEY_INDEX]));
+			check(backend, "a put is counted", store.size() == LOADED_ENTRIES + 1);
+
+			String[] replacement = IDFiles.sessionEntry(LOADED_ENTRIES, 6);
+			store.put(replacement);
+			check(backend, "a put replaces its key", Arrays.equals(store.get(entry[KEY_INDEX]), replacement) && store.size() == LOADED_ENTRIES + 1);
+
+			check(backend, "updating a missing key returns null", store.update(IDFiles.sessionKey(-1), entryData -> entryData) == null);
+			check(backend, "a missing key is not contained", !store.contains(IDFiles.sessionKey(-1)) && store.get(IDFiles.sessionKey(-1)) == null);
+			String[] updated = store.update(entry[KEY_INDEX], entryData -> withColumn(entryData, COUNTER_INDEX, "42"));
+			check(backend, "an update returns the stored entry", updated != null && updated[COUNTER_INDEX].equals("42"));
+			check(backend, "an update can be read back", store.get(entry[KEY_INDEX])[COUNTER_INDEX].equals("42"));
+
+			check(backend, "the stream holds every entry", keysOf(store.stream().toList()).equals(keysOf(scanned(store))));
+		}
+	}
+
+	private static void loadsPaddedRows(String backend, File idFile, Function<File, IDStore> opener) throws IOException {
+		String[] entry = IDFiles.sessionEntry(LOADED_ENTRIES, 500);
+		Files.writeString(idFile.toPath(), " " + String.join(",  ", entry) + " \n", StandardOpenOption.APPEND); // As a hand edit might leave it
+		try(IDStore store = opener.apply(idFile)) {
+			check(backend, "a padded row is loaded", store.contains(entry[KEY_INDEX]) && store.size() == LOADED_ENTRIES + 1);
+			ArrayList<String[]> expiring = new ArrayList<>();
+			store.scanExpiring(500, expiring::add);
+			check(backend, "a padded row is found by its expiry", keyList(expiring).equals(List.of(entry[KEY_INDEX])));
+		}
+	}
+
+	private static void scansInInsertionOrder(String backend, File idFile, Function<File, IDStore> opener) throws IOException {
+		try(IDStore store = opener.apply(idFile)) {
+			ArrayList<String> expectedKeys = new ArrayList<>();
+			for(int i = 0; i < LOADED_ENTRIES; i++) {
+				expectedKeys.add(IDFiles.sessionKey(i));
+			}
+			check(backend, "loaded entries scan in file order", keyList(scanned(store)).equals(expectedKeys));
+
+			for(int i = 0; i < 10; i++) { // Added later but expiring sooner than everything loaded, and in reverse
+				store.put(IDFiles.sessionEntry(LOADED_ENTRIES + i, 100 - i));
+				expectedKeys.add(IDFiles.sessionKey(LOADED_ENTRIES + i));
+			}
+			check(backend, "new entries scan after loaded ones, in the order they were added", keyList(scanned(store)).equals(expectedKeys));
+
+			store.put(IDFiles.sessionEntry(3, 1));
+			store.update(IDFiles.sessionKey(5), entryData -> withColumn(entryData, EXPIRY_INDEX, "2"));
+			check(backend, "replaced and updated entries keep their place", keyList(scanned(store)).equals(expectedKeys));
+
+			store.delete(IDFiles.sessionKey(4));
+			store.put(IDFiles.sessionEntry(4, 1_004));
+			expectedKeys.remove(IDFiles.sessionKey(4));
+			expectedKeys.add(IDFiles.sessionKey(4));
+			check(backend, "a deleted and re-added entry goes to the end", keyList(scanned(store)).equals(expectedKeys));
+			check(backend, "the ordered stream follows the scan", keyList(store.orderedStream().toList()).equals(expectedKeys));
+		}
+	}
+
+	private static void scansExpiringSoonestFirst(String backend, File idFile, Function<File, IDStore> opener) throws IOException {
+		try(IDStore store = opener.apply(idFile)) {
+			store.put(IDFiles.sessionEntry(LOADED_ENTRIES, 1_050)); // Ties with a loaded entry
+			store.update(IDFiles.sessionKey(0), entryData -> withColumn(entryData, EXPIRY_INDEX, "2000")); // Moves out of range
+
+			ArrayList<String[]> expiring = new ArrayList<>();
+			store.scanExpiring(1_050, expiring::add);
+			check(backend, "expiry scans include the bound", expiring.size() == 51);
+			boolean sorted = true;
+			for(int i = 1; i < expiring.size(); i++) {
+				sorted &= Long.parseLong(expiring.get(i - 1)[EXPIRY_INDEX]) <= Long.parseLong(expiring.get(i)[EXPIRY_INDEX]);
+			}
+			check(backend, "expiry scans are soonest first", sorted);
+			check(backend, "expiry scans follow updates", keysOf(expiring).stream().noneMatch(key -> key.equals(IDFiles.sessionKey(0))));
+			check(backend, "expiry scans skip later entries", expiring.stream().allMatch(entryData -> Long.parseLong(entryData[EXPIRY_INDEX]) <= 1_050));
+		}
+	}
+
+	private static void deletesOnlyWhatTheConditionAllows(String backend, File idFile, Function<File, IDStore> opener) throws IOException {
+		try(IDStore store = opener.apply(idFile)) {
+			check(backend, "a failed condition deletes nothing", store.deleteIf(IDFiles.sessionKey(1), entryData -> false) == null && store.contains(IDFiles.sessionKey(1)));
+			String[] deleted = store.deleteIf(IDFiles.sessionKey(1), entryData -> true);
+			check(backend, "a delete returns the entry", Arrays.equals(deleted, IDFiles.sessionEntry(1, 1_001)));
+			check(backend, "a deleted entry is gone", !store.contains(IDFiles.sessionKey(1)) && store.size() == LOADED_ENTRIES - 1);
+			check(backend, "deleting a missing key returns null", store.delete(IDFiles.sessionKey(1)) == null);
+
+			ArrayList<String> keys = new ArrayList<>();
+			for(int i = 0; i < 20; i++) {
+				keys.add(IDFiles.sessionKey(i));
+			}
+			keys.add(IDFiles.sessionKey(-1));
+			List<String[]> bulkDeleted = store.deleteAllIf(keys, entryData -> Long.parseLong(entryData[EXPIRY_INDEX]) < 1_010);
+			HashSet<String> expectedKeys = new HashSet<>();
+			for(int i = 0; i < 10; i++) {
+				if(i != 1) expectedKeys.add(IDFiles.sessionKey(i));
+			}
+			check(backend, "a bulk delete returns what its condition allowed", keysOf(bulkDeleted).equals(expectedKeys));
+			check(backend, "a bulk delete leaves the rest", store.size() == LOADED_ENTRIES - 10 && store.contains(IDFiles.sessionKey(10)) && !store.contains(IDFiles.sessionKey(9)));
+		}
+	}
+
+	private static void survivesReopen(String backend, File idFile, Function<File, IDStore> opener) throws IOException {
+		List<String[]> expected;
+		try(IDStore store = opener.apply(idFile)) {
+			store.put(IDFiles.sessionEntry(LOADED_ENTRIES, 7));
+			store.update(IDFiles.sessionKey(2), entryData -> withColumn(entryData, COUNTER_INDEX, "9"));
+			store.delete(IDFiles.sessionKey(3));
+			expected = scanned(store);
+		}
+		try(IDStore store = opener.apply(idFile)) {
+			check(backend, "a reopened store has every write", rowsEqual(scanned(store), expected));
+		}
+		try(IDStore store = opener.apply(idFile)) { // Once more, after whatever the first reopen folded into the files
+			check(backend, "a twice reopened store has every write", rowsEqual(scanned(store), expected));
+		}
+	}
+
+	private static void updatesAreAtomicPerKey(String backend, File idFile, Function<File, IDStore> opener) throws Exception {
+		try(IDStore store = opener.apply(idFile)) {
+			String key = IDFiles.sessionKey(0);
+			store.update(key, entryData -> withColumn(entryData, COUNTER_INDEX, "0"));
+			try(ExecutorService threads = Executors.newFixedThreadPool(UPDATE_THREADS)) {
+				for(int thread = 0; thread < UPDATE_THREADS; thread++) {
+					threads.execute(() -> {
+						for(int i = 0; i < UPDATES_PER_THREAD; i++) {
+							try {
+								store.update(key, entryData -> withColumn(entryData, COUNTER_INDEX, String.valueOf(Long.parseLong(entryData[COUNTER_INDEX].strip()) + 1)));
+							} catch(IOException e) {
+								throw new RuntimeException(e);
+							}
+						}
+					});
+				}
+			}
+			check(backend, "concurrent updates to one key lose nothing", Long.parseLong(store.get(key)[COUNTER_INDEX].strip()) == (long) UPDATE_THREADS * UPDATES_PER_THREAD);
+		}
+	}
+
+	private static void recoversFromTornJournal(String backend, File idFile, Function<File, IDStore> opener) throws IOException {
+		if(!JOURNALLED_BACKENDS.contains(backend)) return;
+		opener.apply(idFile).close();
+		Path journalPath = Path.of(idFile.getPath() + ".journal");
+		Files.writeString(journalPath, "+ " + IDFiles.sessionKey(-1) + ", 2", StandardOpenOption.APPEND); // Crashed partway through the record
+
+		String[] entry = IDFiles.sessionEntry(LOADED_ENTRIES, 888);
+		try(IDStore store = opener.apply(idFile)) {
+			check(backend, "a torn record is not replayed", !store.contains(IDFiles.sessionKey(-1)) && store.size() == LOADED_ENTRIES);
+			store.put(entry);
+		}
+		String journal = Files.readString(journalPath);
+		check(backend, "a torn record is cut off the journal", !journal.contains(IDFiles.sessionKey(-1)) && (journal.isEmpty() || journal.endsWith("\n")));
+		try(IDStore store = opener.apply(idFile)) {
+			check(backend, "the write after a torn record survives a reopen", Arrays.equals(store.get(entry[KEY_INDEX]), entry) && store.size() == LOADED_ENTRIES + 1);
+		}
+	}
+
+	private static void check(String backend, String description, boolean passed) {
+		checks++;
+		if(!passed) fail(backend, description);
+	}
+
+	private static void fail(String backend, String description) {
+		failures.add(backend + ": " + description);
+	}
+
+	private static String[] withColumn(String[] entryData, int column, String value) {
+		String[] updatedEntry = entryData.clone();
+		updatedEntry[column] = value;
+		return updatedEntry;
+	}
+
+	private static List<String[]> scanned(IDStore store) {
+		ArrayList<String[]> entries = new ArrayList<>();
+		store.scan(entries::add);
+		return entries;
+	}
+
+	private static List<String> keyList(List<String[]> entries) {
+		return entries.stream().map(entryData -> entryData[KEY_INDEX].strip()).toList();
+	}
+
+	private static HashSet<String> keysOf(List<String[]> entries) {
+		return new HashSet<>(keyList(entries));
+	}
+
+	private static boolean rowsEqual(List<String[]> entries, List<String[]> expected) {
+		if(entries.size() != expected.size()) return false;
+		for(int i = 0; i < entries.size(); i++) {
+			if(!Arrays.equals(entries.get(i), expected.get(i))) return false;
+		}
+		return true;
+	}
+
+	private static void deleteStoreFiles(File idFile) throws IOException {
+		for(String suffix : new String[]{ "", ".journal", ".journal.tmp", ".tmp", ".mv", MappedIDStore.FILE_SUFFIX }) {
+			Files.deleteIfExists(new File(idFile.getPath() + suffix).toPath());
+		}
+	}
+
+	@FunctionalInterface
+	private interface Check {
+		void run(String backend, File idFile, Function<File, IDStore> opener) throws Exception;
+	}
+
+}
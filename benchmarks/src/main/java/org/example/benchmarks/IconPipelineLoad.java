@@ -0,0 +1,161 @@
+package org.example.benchmarks;
+
+import com.sun.net.httpserver.HttpServer;
+import net.dv8tion.jda.api.entities.Icon;
+import net.dv8tion.jda.api.utils.AttachmentProxy;
+import org.example.icons.IconPipeline;
+import org.example.metrics.LatencyHistogram;
+import org.example.metrics.Metrics;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+public class IconPipelineLoad {
+
+	// Uploads icons from a local HTTP server standing in for Discord's CDN, first the way /addlc used to (download as an
+	// icon and send it on as is), then through the IconPipeline. Half the images are too large for Discord, and every
+	// image is uploaded several times over, the way one icon gets retried or reused across ranks. The guild's hash store
+	// is a map here, so the run measures the download, hashing and scaling without a Discord behind it.
+	// "java -cp target/benchmarks.jar org.example.benchmarks.IconPipelineLoad [uploads] [distinct images] [concurrent uploads]"
+
+	private static final int LARGE_IMAGE_SIZE = 1024;
+	private static final int SMALL_IMAGE_SIZE = 96;
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int uploads = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+		int distinctImages = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+		int concurrency = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+
+		List<byte[]> images = new ArrayList<>();
+		for(int i = 0; i < distinctImages; i++) {
+			images.add(createImage(i % 2 == 0 ? LARGE_IMAGE_SIZE : SMALL_IMAGE_SIZE, i));
+		}
+		HttpServer cdn = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		cdn.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+		cdn.createContext("/attachments/", exchange -> {
+			String path = exchange.getRequestURI().getPath();
+			byte[] body = images.get(Integer.parseInt(path.substring(path.lastIndexOf('/') + 1, path.lastIndexOf('.'))));
+			exchange.getResponseHeaders().add("Content-Type", "image/png");
+			exchange.sendResponseHeaders(200, body.length);
+			try(OutputStream output = exchange.getResponseBody()) {
+				output.write(body);
+			}
+		});
+		cdn.start();
+		String baseUrl = "http://127.0.0.1:" + cdn.getAddress().getPort() + "/attachments/";
+		long totalBytes = images.stream().mapToLong(image -> image.length).sum();
+		System.out.printf("%,d uploads of %d images (%,d KB in all, half over Discord's %d KB limit), %d at a time%n",
+				uploads, distinctImages, totalBytes / 1024, IconPipeline.MAX_ICON_BYTES / 1024, concurrency);
+
+		Run baseline = new Run("direct");
+		run(uploads, distinctImages, concurrency, baseUrl, baseline, url -> new AttachmentProxy(url).downloadAsIcon());
+
+		IconPipeline iconPipeline = new IconPipeline(2, 16);
+		ConcurrentHashMap<Long, CompletableFuture<Icon>> guildIcons = new ConcurrentHashMap<>(); // Stands in for the guild's hash store and its emojis
+		Run pipeline = new Run("pipeline");
+		run(uploads, distinctImages, concurrency, baseUrl, pipeline, url -> iconPipeline.download(new AttachmentProxy(url)).thenCompose(upload -> {
+			CompletableFuture<Icon> created = new CompletableFuture<>();
+			CompletableFuture<Icon> existing = guildIcons.putIfAbsent(upload.contentHash(), created);
+			if(existing != null) {
+				pipeline.reused.increment();
+				return existing;
+			}
+			iconPipeline.prepare(upload.bytes()).whenComplete((icon, throwable) -> {
+				if(throwable == null) created.complete(icon);
+				else created.completeExceptionally(throwable);
+			});
+			return created;
+		}));
+
+		System.out.printf("%-9s %8s %8s %10s %10s %10s %10s %12s %12s%n", "path", "done", "reused", "oversize", "failed", "wall ms", "p50 ms", "p99 ms", "KB to send");
+		baseline.print();
+		pipeline.print();
+		Metrics.scrape().lines().filter(line -> line.startsWith("overture_icon")).filter(line -> !line.contains("_bucket")).forEach(System.out::println);
+
+		cdn.stop(0);
+		System.exit(0); // JDA's download client keeps its threads alive
+	}
+
+	private static void run(int uploads, int distinctImages, int concurrency, String baseUrl, Run run, IconSource source) throws InterruptedException {
+		Semaphore permits = new Semaphore(concurrency);
+		Random random = new Random(42); // Both paths see the same sequence of uploads
+		long startTime = System.nanoTime();
+		try(ExecutorService uploaders = Executors.newVirtualThreadPerTaskExecutor()) {
+			for(int i = 0; i < uploads; i++) {
+				permits.acquire();
+				String url = baseUrl + random.nextInt(distinctImages) + ".png";
+				uploaders.execute(() -> {
+					long uploadTime = System.nanoTime();
+					try {
+						Icon icon = source.fetch(url).join();
+						run.latency.recordSince(uploadTime);
+						long iconBytes = icon.getEncoding().length() * 3L / 4; // Base64 back to bytes
+						run.sentBytes.add(iconBytes);
+						if(iconBytes > IconPipeline.MAX_ICON_BYTES) run.oversize.increment(); // Discord would refuse it
+					} catch(RuntimeException e) {
+						run.failed.increment();
+					} finally {
+						permits.release();
+					}
+				});
+			}
+		}
+		run.wallNanos = System.nanoTime() - startTime;
+	}
+
+	private static byte[] createImage(int size, int seed) throws IOException { // Noise over a gradient, so PNG can barely compress it
+		Random random = new Random(seed);
+		BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+		for(int y = 0; y < size; y++) {
+			for(int x = 0; x < size; x++) {
+				int shade = (x + y + seed * 16) & 0xFF;
+				image.setRGB(x, y, 0xFF000000 | (shade << 16) | (random.nextInt(256) << 8) | ((255 - shade) & 0xFF));
+			}
+		}
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		ImageIO.write(image, "png", output);
+		return output.toByteArray();
+	}
+
+	@FunctionalInterface
+	private interface IconSource {
+		CompletableFuture<Icon> fetch(String url);
+	}
+
+	private static final class Run {
+
+		private final String name;
+		private final LatencyHistogram latency;
+		private final LongAdder reused = new LongAdder();
+		private final LongAdder oversize = new LongAdder();
+		private final LongAdder failed = new LongAdder();
+		private final LongAdder sentBytes = new LongAdder();
+		private long wallNanos;
+
+		private Run(String name) {
+			this.name = name;
+			latency = Metrics.histogram("iconload_" + name + "_seconds", "Icon load test " + name + " latency");
+		}
+
+		private void print() {
+			System.out.printf("%-9s %,8d %,8d %,10d %,10d %,10.0f %10.1f %12.1f %,12d%n", name, latency.getCount(), reused.sum(), oversize.sum(),
+					failed.sum(), wallNanos / 1e6, latency.getP50Millis(), latency.getP99Millis(), sentBytes.sum() / 1024);
+		}
+
+	}
+
+}
@@ -0,0 +1,73 @@
+package org.example.benchmarks;
+
+import org.example.links.LinkScanner;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LinkScannerBenchmark {
+
+	// Compares the link scanner with the regex sendApplication used to compile on every call
+
+	private static final int MAX_LINKS = 5;
+	private static final String URL_REGEX = "\\b(https?|ftp|file)://[-a-zA-Z0-9+&@#/%?=~_|!:,.;]*[-a-zA-Z0-9+&@#/%=~_|]";
+
+	@Param({ "chat", "links", "large", "adversarial" })
+	public String input;
+
+	private String text;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		StringBuilder stringBuilder = new StringBuilder();
+		switch(input) {
+			case "chat" -> stringBuilder.append("here is my layout, https://www.youtube.com/watch?v=dQw4w9WgXcQ hope you like it!");
+			case "links" -> {
+				for(int i = 0; i < 8; i++) {
+					stringBuilder.append("part ").append(i).append(": https://youtu.be/video").append(i).append("\n");
+				}
+			}
+			case "large" -> { // A full 4000 character nitro message with a link at the very end
+				while(stringBuilder.length() < 3950) {
+					stringBuilder.append("lorem ipsum dolor sit amet ");
+				}
+				stringBuilder.append("https://streamable.com/abc123");
+			}
+			case "adversarial" -> { // Long runs of URL body characters that can never end a match
+				for(int i = 0; i < 200; i++) {
+					stringBuilder.append("http://").append(";".repeat(15)).append(' ');
+				}
+			}
+			default -> throw new IllegalArgumentException(input);
+		}
+		text = stringBuilder.toString();
+	}
+
+	@Benchmark
+	public List<String> regex() {
+		ArrayList<String> links = new ArrayList<>();
+		Matcher matcher = Pattern.compile(URL_REGEX).matcher(text);
+		while(matcher.find() && links.size() < MAX_LINKS) {
+			links.add(matcher.group());
+		}
+		return links;
+	}
+
+	@Benchmark
+	public List<String> linkScanner() {
+		LinkScanner linkScanner = new LinkScanner(MAX_LINKS);
+		linkScanner.scan(text);
+		return linkScanner.getUrls();
+	}
+
+}
@@ -0,0 +1,220 @@
+package org.example.benchmarks;
+
+import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
+import net.dv8tion.jda.api.events.interaction.component.ButtonInteractionEvent;
+import net.dv8tion.jda.api.events.interaction.component.StringSelectInteractionEvent;
+import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
+import net.dv8tion.jda.api.interactions.commands.build.Commands;
+import net.dv8tion.jda.api.interactions.components.buttons.Button;
+import org.example.commands.CommandRouter;
+import org.example.guilds.GuildContexts;
+import org.example.ids.sessions.SessionRecord;
+import org.example.launch.VirtualThreadEventManager;
+import org.example.listeners.ApplicationListener;
+import org.example.metrics.LatencyHistogram;
+import org.example.metrics.Metrics;
+import org.example.outbound.Outbox;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+public class ListenerLoadTest {
+
+	// Drives ApplicationListener end to end through the production event manager with synthetic gateway traffic, against
+	// FakeDiscord's REST layer. Every user loops through a journey: /apply, then either links and send (judged half the
+	// time), cancel, or walking away until the session expires. A journey step is timed from the moment its event is
+	// dispatched until the bot's final answer reaches the user. Some users also have sessions left over from a previous
+	// run in the sessions file, half of them already past their deadline, whose DMs the restarted bot has never seen;
+	// each must still be told that it timed out, timed from its deadline or from the load for those already past it.
+	// "java -cp target/benchmarks.jar org.example.benchmarks.ListenerLoadTest [users] [seconds] [latency ms] [429 chance] [error chance]"
+
+	private static final long GUILD_ID = 1_160_000_000_000_000_000L;
+	private static final long SESSION_MILLIS = 5_000; // Short, so expiring journeys finish inside the run, but longer than a send held up by 429s
+	private static final long REPLY_TIMEOUT_MILLIS = 10_000;
+	private static final long RESTORED_SPREAD_MILLIS = 1_000; // How far before or after the load the left over sessions are due
+	private static final Button CANCEL_BUTTON = Button.danger("cancel", "Cancel");
+
+	private static final Flow APPLY = new Flow("apply");
+	private static final Flow SEND = new Flow("send");
+	private static final Flow CANCEL = new Flow("cancel");
+	private static final Flow EXPIRE = new Flow("expire");
+	private static final Flow JUDGE = new Flow("judge");
+	private static final Flow RESTART = new Flow("restart");
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int users = args.length > 0 ? Integer.parseInt(args[0]) : 2_000;
+		int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+		long latencyMillis = args.length > 2 ? Long.parseLong(args[2]) : 50;
+		double rateLimitChance = args.length > 3 ? Double.parseDouble(args[3]) : 0.01;
+		double errorChance = args.length > 4 ? Double.parseDouble(args[4]) : 0.001;
+
+		System.setProperty("overture.session.millis", String.valueOf(SESSION_MILLIS)); // Read when the listener class loads
+		for(String command : new String[]{ "apply", "send", "cancel" }) { // Users here retry far faster than people do
+			System.setProperty("overture.limit." + command, "1000/1");
+		}
+
+		Path directory = Files.createTempDirectory("overture-load");
+		Path guildDirectory = Files.createDirectories(directory.resolve(String.valueOf(GUILD_ID)));
+		FakeDiscord discord = new FakeDiscord(new FakeDiscord.Settings(TimeUnit.MILLISECONDS.toMicros(latencyMillis), rateLimitChance, 1_000, errorChance), GUILD_ID);
+		Files.writeString(guildDirectory.resolve("roleIDs.txt"), "RoleID, EmojiID\n" + discord.rankRole().getId() + ", 1\n", StandardCharsets.UTF_8); // The judge menu needs a rank
+
+		FakeDiscord.FakeUser[] restoredUsers = new FakeDiscord.FakeUser[Math.max(1, users / 10)];
+		long[] restoredDeadlines = new long[restoredUsers.length];
+		StringBuilder sessions = new StringBuilder("SessionChannelID, ApplicationMessageID, Timeout, UserID, VideoLinks\n");
+		for(int i = 0; i < restoredUsers.length; i++) {
+			restoredUsers[i] = discord.user();
+			restoredDeadlines[i] = System.currentTimeMillis() + (i % 2 == 0 ? -RESTORED_SPREAD_MILLIS : RESTORED_SPREAD_MILLIS);
+			SessionRecord session = new SessionRecord(restoredUsers[i].privateChannel.getIdLong(), restoredUsers[i].message("").getIdLong(),
+					restoredDeadlines[i], restoredUsers[i].id, List.of());
+			sessions.append(String.join(", ", session.toEntry())).append('\n');
+		}
+		Files.writeString(guildDirectory.resolve("sessionIDs.txt"), sessions, StandardCharsets.UTF_8);
+
+		GuildContexts guildContexts = new GuildContexts(directory.toFile());
+		VirtualThreadEventManager eventManager = new VirtualThreadEventManager();
+		eventManager.register(guildContexts);
+		ApplicationListener applicationListener = new ApplicationListener(guildContexts, new Outbox());
+		eventManager.register(applicationListener);
+		eventManager.register(new CommandRouter().route(Commands.slash("apply", "Apply for a new creator skill role."), applicationListener::onApply, 16, 256));
+		guildContexts.get(discord.guild());
+
+		long startTime = System.nanoTime();
+		long endAt = startTime + TimeUnit.SECONDS.toNanos(seconds);
+		try(ExecutorService userThreads = Executors.newVirtualThreadPerTaskExecutor()) {
+			for(int i = 0; i < restoredUsers.length; i++) {
+				FakeDiscord.FakeUser user = restoredUsers[i];
+				long expireTime = startTime + Math.max(0, TimeUnit.MILLISECONDS.toNanos(restoredDeadlines[i] - System.currentTimeMillis()));
+				userThreads.execute(() -> {
+					try {
+						RESTART.record(awaitReply(user, text -> text.startsWith("Application Timed Out")), expireTime, "Application Timed Out");
+					} catch(InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				});
+			}
+			for(int i = 0; i < users; i++) {
+				FakeDiscord.FakeUser user = discord.user();
+				userThreads.execute(() -> {
+					try {
+						while(System.nanoTime() < endAt) {
+							journey(eventManager, discord, user);
+						}
+					} catch(InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				});
+			}
+		}
+		double elapsedSeconds = (System.nanoTime() - startTime) / 1e9;
+
+		System.out.printf("%,d users for %.1f s, %d ms REST latency, %.2f%% 429s, %.2f%% server errors%n",
+				users, elapsedSeconds, latencyMillis, rateLimitChance * 100, errorChance * 100);
+		System.out.printf("%-8s %10s %10s %8s %8s %8s %10s %10s %10s%n", "flow", "completed", "per sec", "errors", "limited", "timeouts", "p50 ms", "p99 ms", "p999 ms");
+		for(Flow flow : new Flow[]{ APPLY, SEND, CANCEL, EXPIRE, JUDGE, RESTART }) {
+			flow.print(elapsedSeconds);
+		}
+		System.out.printf("REST calls %,d (%,.0f per sec), 429s %,d, server errors %,d%n",
+				discord.restCalls(), discord.restCalls() / elapsedSeconds, discord.rateLimits(), discord.serverErrors());
+		LatencyHistogram queueLatency = Metrics.histogram("overture_event_queue_seconds", "");
+		System.out.printf("event queue p99 %.2f ms, p999 %.2f ms%n", queueLatency.getP99Millis(), queueLatency.getP999Millis());
+		Metrics.scrape().lines().filter(line -> line.startsWith("overture_dm_cache_")).forEach(System.out::println);
+
+		discord.shutdown();
+		try(Stream<Path> files = Files.walk(directory)) {
+			files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+		}
+		System.exit(0); // The expiry wheel and outbox threads would otherwise keep running
+	}
+
+	private static void journey(VirtualThreadEventManager eventManager, FakeDiscord discord, FakeDiscord.FakeUser user) throws InterruptedException {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		user.inbox.clear();
+
+		long applyTime = System.nanoTime();
+		eventManager.handle(new SlashCommandInteractionEvent(user.user.getJDA(), 0, user.slashCommand("apply")));
+		FakeDiscord.Reply reply = awaitReply(user, text -> text.startsWith("Check your DM") || text.startsWith("Something went wrong") || text.startsWith("You are applying"));
+		if(!APPLY.record(reply, applyTime, "Check your DM")) return;
+		awaitReply(user, text -> text.startsWith("Application process initiated") || text.startsWith("Application process aborted")); // The session is ready once its message says so
+
+		int path = random.nextInt(10);
+		if(path < 5) { // Send links and submit them
+			for(int i = random.nextInt(1, 4); i > 0; i--) {
+				eventManager.handle(new MessageReceivedEvent(user.user.getJDA(), 0, user.message("https://youtu.be/" + Long.toHexString(random.nextLong()))));
+			}
+			long sendTime = System.nanoTime();
+			eventManager.handle(new MessageReceivedEvent(user.user.getJDA(), 0, user.message("send"))); // Ordered behind the links on the DM's lane
+			reply = awaitReply(user, text -> text.startsWith("Application submitted") || text.startsWith("Application not sent") || text.startsWith("Application process aborted"));
+			if(SEND.record(reply, sendTime, "Application submitted") && random.nextBoolean()) {
+				FakeDiscord.FakeUser judge = discord.user(); // Judges come and go, so none of them queues behind another
+				long judgeTime = System.nanoTime();
+				eventManager.handle(new StringSelectInteractionEvent(judge.user.getJDA(), 0, judge.rankSelection(user)));
+				JUDGE.record(awaitReply(judge, text -> text.startsWith("Result sent")), judgeTime, "Result sent");
+			}
+		} else if(path < 8) { // Cancel, by typing or with the button
+			long cancelTime = System.nanoTime();
+			if(random.nextBoolean()) {
+				eventManager.handle(new MessageReceivedEvent(user.user.getJDA(), 0, user.message("cancel")));
+			} else {
+				eventManager.handle(new ButtonInteractionEvent(user.user.getJDA(), 0, user.buttonClick(CANCEL_BUTTON, user.lastBotMessage())));
+			}
+			CANCEL.record(awaitReply(user, text -> text.startsWith("Application process cancelled") || text.startsWith("Application process aborted")), cancelTime, "Application process cancelled");
+		} else { // Walk away and wait for the timeout, timed from when the session was due to end
+			long expireTime = applyTime + TimeUnit.MILLISECONDS.toNanos(SESSION_MILLIS);
+			EXPIRE.record(awaitReply(user, text -> text.startsWith("Application Timed Out")), expireTime, "Application Timed Out");
+		}
+	}
+
+	private static FakeDiscord.Reply awaitReply(FakeDiscord.FakeUser user, Predicate<String> isAnswer) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(REPLY_TIMEOUT_MILLIS);
+		while(true) {
+			FakeDiscord.Reply reply = user.inbox.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+			if(reply == null || (reply.text() != null && isAnswer.test(reply.text()))) return reply;
+		}
+	}
+
+	private static final class Flow {
+
+		private final String name;
+		private final LatencyHistogram latency;
+		private final LongAdder errors = new LongAdder();
+		private final LongAdder limited = new LongAdder();
+		private final LongAdder timeouts = new LongAdder();
+
+		private Flow(String name) {
+			this.name = name;
+			latency = Metrics.histogram("loadtest_" + name + "_seconds", "Load test " + name + " latency");
+		}
+
+		private boolean record(FakeDiscord.Reply reply, long startTime, String success) { // True when the step succeeded
+			if(reply == null) {
+				timeouts.increment();
+				return false;
+			}
+			latency.record(reply.nanoTime() - startTime);
+			if(reply.text().startsWith(success)) return true;
+			if(reply.text().startsWith("You are applying")) limited.increment();
+			else errors.increment();
+			return false;
+		}
+
+		private void print(double elapsedSeconds) {
+			long completed = latency.getCount();
+			System.out.printf("%-8s %,10d %,10.0f %8d %8d %8d %10.1f %10.1f %10.1f%n", name, completed, completed / elapsedSeconds,
+					errors.sum(), limited.sum(), timeouts.sum(), latency.getP50Millis(), latency.getP99Millis(), latency.getP999Millis());
+		}
+
+	}
+
+}
@@ -0,0 +1,146 @@
+package org.example.benchmarks;
+
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
+import net.dv8tion.jda.api.events.interaction.component.ButtonInteractionEvent;
+import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
+import net.dv8tion.jda.api.interactions.commands.build.Commands;
+import net.dv8tion.jda.api.interactions.components.buttons.Button;
+import org.example.commands.CommandRouter;
+import org.example.guilds.GuildContexts;
+import org.example.launch.VirtualThreadEventManager;
+import org.example.listeners.ApplicationListener;
+import org.example.metrics.Metrics;
+import org.example.outbound.Outbox;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+public class RateLimiterFlood {
+
+	// Floods ApplicationListener with /apply, typed send and cancel, and send and cancel button clicks from a handful of
+	// users at a fixed total rate, through the production event manager and command router against FakeDiscord, then
+	// counts the session store writes (journal syncs) and REST calls that actually happened. Calls past a user's limit
+	// must cost nothing, except /apply, which Discord requires to be acknowledged and answered. Whatever got through
+	// may cost at most what the most expensive command does. Exits non-zero when either count is over its bound.
+	// "java -cp target/benchmarks.jar org.example.benchmarks.RateLimiterFlood [requests per second] [users] [seconds]"
+
+	private static final long GUILD_ID = 1_170_000_000_000_000_000L;
+	private static final String[] COMMANDS = { "apply", "send", "cancel" };
+	private static final int[] BURSTS = { 2, 3, 3 }; // The defaults ApplicationListener uses
+	private static final int[] PERIOD_SECONDS = { 60, 30, 30 };
+	private static final int MAX_ADMITTED_REST_CALLS = 6; // A clicked send: acknowledge, disable the buttons, fetch the member, post, links, DM
+	private static final int MAX_ADMITTED_STORE_WRITES = 2; // An /apply replacing a session: delete, then append
+	private static final int REJECTED_APPLY_REST_CALLS = 2; // The router's acknowledgement and the "applying too often" reply
+	private static final long QUIET_MILLIS = 1_000; // Nothing was written or sent for this long, so the flood has played out
+	private static final Button SEND_BUTTON = Button.success("send", "Send");
+	private static final Button CANCEL_BUTTON = Button.danger("cancel", "Cancel");
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int requestsPerSecond = args.length > 0 ? Integer.parseInt(args[0]) : 2_000;
+		int users = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+		int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+		Path directory = Files.createTempDirectory("overture-flood");
+		FakeDiscord discord = new FakeDiscord(new FakeDiscord.Settings(TimeUnit.MILLISECONDS.toMicros(5), 0, 0, 0), GUILD_ID);
+		GuildContexts guildContexts = new GuildContexts(directory.toFile());
+		VirtualThreadEventManager eventManager = new VirtualThreadEventManager();
+		eventManager.register(guildContexts);
+		ApplicationListener applicationListener = new ApplicationListener(guildContexts, new Outbox());
+		eventManager.register(applicationListener);
+		eventManager.register(new CommandRouter().route(Commands.slash("apply", "Apply for a new creator skill role."), applicationListener::onApply, 16, 256));
+		guildContexts.get(discord.guild());
+		awaitQuiet(discord); // Loading the guild makes calls of its own
+
+		long startRestCalls = discord.restCalls();
+		long startStoreWrites = storeWrites();
+		long startLimited = Metrics.counter("overture_rate_limited_total", "").getCount();
+		long startBusy = Metrics.counter("overture_command_rejected_total", "").getCount();
+		LongAdder requests = new LongAdder();
+		LongAdder applies = new LongAdder();
+
+		long intervalNanos = TimeUnit.SECONDS.toNanos(1) * users / requestsPerSecond; // Each user sends its share of the rate
+		long endAt = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+		ArrayList<Thread> floods = new ArrayList<>();
+		for(int i = 0; i < users; i++) {
+			FakeDiscord.FakeUser user = discord.user();
+			floods.add(Thread.ofPlatform().start(() -> {
+				int call = 0;
+				for(long nextAt = System.nanoTime(); nextAt < endAt; nextAt += intervalNanos, call++) {
+					while(System.nanoTime() < nextAt) {
+						Thread.onSpinWait();
+					}
+					requests.increment();
+					switch(call % 5) {
+						case 0 -> {
+							applies.increment();
+							eventManager.handle(new SlashCommandInteractionEvent(user.user.getJDA(), 0, user.slashCommand("apply")));
+						}
+						case 1 -> eventManager.handle(new MessageReceivedEvent(user.user.getJDA(), 0, user.message("send")));
+						case 2 -> eventManager.handle(new MessageReceivedEvent(user.user.getJDA(), 0, user.message("cancel")));
+						case 3 -> eventManager.handle(new ButtonInteractionEvent(user.user.getJDA(), 0, user.buttonClick(SEND_BUTTON, applicationMessage(user))));
+						default -> eventManager.handle(new ButtonInteractionEvent(user.user.getJDA(), 0, user.buttonClick(CANCEL_BUTTON, applicationMessage(user))));
+					}
+				}
+			}));
+		}
+		for(Thread flood : floods) {
+			flood.join();
+		}
+		awaitQuiet(discord);
+
+		long restCalls = discord.restCalls() - startRestCalls;
+		long storeWrites = storeWrites() - startStoreWrites;
+		long rejected = Metrics.counter("overture_rate_limited_total", "").getCount() - startLimited
+				+ Metrics.counter("overture_command_rejected_total", "").getCount() - startBusy;
+		long admitted = requests.sum() - rejected;
+		long restBound = admitted * MAX_ADMITTED_REST_CALLS + applies.sum() * REJECTED_APPLY_REST_CALLS;
+		long storeBound = admitted * MAX_ADMITTED_STORE_WRITES;
+
+		System.out.printf("%,d requests from %d users over %d seconds (%,d per second), %,d admitted (limit %,d)%n",
+				requests.sum(), users, seconds, requests.sum() / seconds, admitted, admittedBound(users, seconds));
+		System.out.printf("store writes: %,d (bound %,d)%n", storeWrites, storeBound);
+		System.out.printf("REST calls:   %,d (bound %,d)%n", restCalls, restBound);
+
+		discord.shutdown();
+		try(Stream<Path> files = Files.walk(directory)) {
+			files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+		}
+		boolean passed = admitted <= admittedBound(users, seconds) && storeWrites <= storeBound && restCalls <= restBound;
+		System.exit(passed ? 0 : 1); // The expiry wheel and outbox threads would otherwise keep running
+	}
+
+	private static Message applicationMessage(FakeDiscord.FakeUser user) { // Before /apply has posted, any DM message will do
+		return user.lastBotMessage() != null ? user.lastBotMessage() : user.message("");
+	}
+
+	private static long storeWrites() { // Every write to a session store waits for its journal record once
+		return Metrics.histogram("overture_store_sync_seconds", "").getCount();
+	}
+
+	private static void awaitQuiet(FakeDiscord discord) throws InterruptedException {
+		long lastRestCalls = -1;
+		long lastStoreWrites = -1;
+		while(discord.restCalls() != lastRestCalls || storeWrites() != lastStoreWrites) {
+			lastRestCalls = discord.restCalls();
+			lastStoreWrites = storeWrites();
+			Thread.sleep(QUIET_MILLIS);
+		}
+	}
+
+	private static long admittedBound(int users, int seconds) { // A full burst, then one token back per refill period
+		long total = 0;
+		for(int command = 0; command < COMMANDS.length; command++) {
+			total += (long) users * (BURSTS[command] + (long) seconds * BURSTS[command] / PERIOD_SECONDS[command]);
+		}
+		return total;
+	}
+
+}
@@ -0,0 +1,74 @@
+package org.example.benchmarks;
+
+import org.example.ids.sessions.SessionRecord;
+import org.example.ids.stores.FlatFileIDStore;
+import org.example.ids.stores.IDStore;
+import org.example.ids.stores.SessionIDStore;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+
+public class SessionFootprint {
+
+	// Loads a session file into each store in turn and prints the heap it keeps and the GC work loading it took.
+	// "java -Xmx4g -cp target/benchmarks.jar org.example.benchmarks.SessionFootprint [sessions]"
+
+	public static void main(String[] args) throws IOException {
+		int entries = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+		File idFile = IDFiles.createSessionFile(entries, Long.MAX_VALUE);
+		try {
+			measure("strings", entries, () -> new FlatFileIDStore(idFile, SessionRecord.CHANNEL_INDEX, SessionRecord.EXPIRY_INDEX));
+			measure("typed", entries, () -> new SessionIDStore(idFile));
+		} finally {
+			idFile.delete();
+			new File(idFile.getPath() + ".journal").delete();
+		}
+	}
+
+	private static void measure(String name, int entries, StoreOpener opener) throws IOException {
+		long baseline = settledHeap();
+		long collections = gcCount();
+		long collectionMillis = gcMillis();
+
+		IDStore store = opener.open();
+		long loadedCollections = gcCount() - collections;
+		long loadedCollectionMillis = gcMillis() - collectionMillis;
+		long retained = settledHeap() - baseline;
+
+		System.out.printf("%-8s %,d sessions: %,d MB retained (%d bytes each), %d collections taking %d ms while loading%n",
+				name, store.size(), retained >> 20, retained / entries, loadedCollections, loadedCollectionMillis);
+		store.close();
+	}
+
+	private static long settledHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for(int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	private static long gcCount() {
+		long count = 0;
+		for(GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+			count += collector.getCollectionCount();
+		}
+		return count;
+	}
+
+	private static long gcMillis() {
+		long millis = 0;
+		for(GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+			millis += collector.getCollectionTime();
+		}
+		return millis;
+	}
+
+	@FunctionalInterface
+	private interface StoreOpener {
+		IDStore open() throws IOException;
+	}
+
+}
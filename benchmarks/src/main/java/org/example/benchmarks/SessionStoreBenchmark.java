@@ -0,0 +1,73 @@
+package org.example.benchmarks;
+
+import org.example.ids.sessions.SessionRecord;
+import org.example.ids.stores.FlatFileIDStore;
+import org.example.ids.stores.IDStore;
+import org.example.ids.stores.SessionIDStore;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = { "-Xmx2g" })
+public class SessionStoreBenchmark {
+
+	// String rows against typed session records at a million live sessions. Run with "-prof gc" to see the
+	// allocation per lookup, and SessionFootprint for the retained heap of each.
+
+	@Param({ "strings", "typed" })
+	public String store;
+
+	@Param({ "1000000" })
+	public int entries;
+
+	private File idFile;
+	private IDStore idStore;
+	private SessionIDStore sessionStore; // Null for the String store
+	private String[] keys; // Built up front so the harness itself allocates nothing per operation
+	private long[] channelIds;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		idFile = IDFiles.createSessionFile(entries, Long.MAX_VALUE);
+		keys = new String[entries];
+		channelIds = new long[entries];
+		for(int i = 0; i < entries; i++) {
+			keys[i] = IDFiles.sessionKey(i);
+			channelIds[i] = Long.parseLong(keys[i]);
+		}
+		if(store.equals("typed")) {
+			sessionStore = new SessionIDStore(idFile);
+			idStore = sessionStore;
+		} else {
+			idStore = new FlatFileIDStore(idFile, SessionRecord.CHANNEL_INDEX, SessionRecord.EXPIRY_INDEX);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		idStore.close();
+		idFile.delete();
+		new File(idFile.getPath() + ".journal").delete();
+	}
+
+	@Benchmark
+	public boolean contains() { // The check every DM message makes
+		return idStore.contains(keys[ThreadLocalRandom.current().nextInt(entries)]);
+	}
+
+	@Benchmark
+	public long readExpiry() { // Typed records answer without building a row or parsing it back
+		int i = ThreadLocalRandom.current().nextInt(entries);
+		if(sessionStore != null) return sessionStore.getSession(channelIds[i]).expiryMillis();
+		return Long.parseLong(idStore.get(keys[i])[SessionRecord.EXPIRY_INDEX]);
+	}
+
+}
@@ -0,0 +1,148 @@
+package org.example.benchmarks;
+
+import org.example.ids.idmanagers.TimedIDManager;
+import org.example.ids.sessions.SessionRecord;
+import org.example.ids.stores.FlatFileIDStore;
+import org.example.ids.stores.IDStore;
+import org.example.ids.stores.MVStoreIDStore;
+import org.example.ids.stores.MappedIDStore;
+import org.example.ids.stores.SessionIDStore;
+import org.example.metrics.Metrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+public class SessionStress {
+
+	// Hammers a few session keys with applies, cancels and link updates from many threads while their short timers
+	// expire underneath, the way a busy guild does to one sessions file, then lets every session run out and checks
+	// what each key went through. Every apply writes a fresh message id, so each session can be told apart:
+	// no session may expire twice or before its deadline, an expired session must be one that was applied, and once
+	// everything has settled no session may be left in the store or with an armed timer, which is what a write and a
+	// timer of two different applies ending up on one key would do. Exits non-zero when any check fails.
+	// "java -cp target/benchmarks.jar org.example.benchmarks.SessionStress [operations] [keys] [threads] [backend...]"
+
+	private static final long MAX_LIFETIME_MILLIS = 300;
+	private static final long SETTLE_MILLIS = 15_000; // Lifetimes, the wheel's tick and the executor's backoff all fit well inside this
+	private static final AtomicLong NEXT_MESSAGE_ID = new AtomicLong(1_200_000_000_000_000_000L);
+
+	private static final LinkedHashMap<String, Function<File, IDStore>> BACKENDS = new LinkedHashMap<>();
+	static {
+		BACKENDS.put("flat", idFile -> new FlatFileIDStore(idFile, SessionRecord.CHANNEL_INDEX, SessionRecord.EXPIRY_INDEX));
+		BACKENDS.put("session", SessionIDStore::new);
+		BACKENDS.put("mvstore", idFile -> MVStoreIDStore.open(idFile, SessionRecord.CHANNEL_INDEX, SessionRecord.EXPIRY_INDEX));
+		BACKENDS.put("mapped", idFile -> MappedIDStore.open(idFile, SessionRecord.CHANNEL_INDEX, SessionRecord.EXPIRY_INDEX));
+	}
+
+	public static void main(String[] args) throws Exception {
+		int operations = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+		int keys = args.length > 1 ? Integer.parseInt(args[1]) : 32;
+		int threads = args.length > 2 ? Integer.parseInt(args[2]) : 16;
+		List<String> backends = args.length > 3 ? List.of(args).subList(3, args.length) : List.copyOf(BACKENDS.keySet());
+
+		ArrayList<String> failures = new ArrayList<>();
+		for(String backend : backends) {
+			Function<File, IDStore> opener = BACKENDS.get(backend);
+			if(opener == null) throw new IllegalArgumentException("Unknown backend " + backend + ", expected one of " + BACKENDS.keySet());
+			File idFile = IDFiles.createSessionFile(0, i -> 0, IDFiles.NUMERIC_LABELS);
+			try {
+				run(backend, opener.apply(idFile), operations, keys, threads, failures);
+			} finally {
+				for(String suffix : new String[]{ "", ".journal", ".journal.tmp", ".tmp", ".mv", MappedIDStore.FILE_SUFFIX }) {
+					Files.deleteIfExists(new File(idFile.getPath() + suffix).toPath());
+				}
+			}
+		}
+
+		System.out.printf("%d failed%n", failures.size());
+		failures.forEach(failure -> System.out.println("  " + failure));
+		System.exit(failures.isEmpty() ? 0 : 1);
+	}
+
+	private static void run(String backend, IDStore store, int operations, int keys, int threads, List<String> failures) throws Exception {
+		Set<String> appliedSessions = ConcurrentHashMap.newKeySet();
+		Set<String> expiredSessions = ConcurrentHashMap.newKeySet();
+		LongAdder applies = new LongAdder();
+		LongAdder cancels = new LongAdder();
+		LongAdder updates = new LongAdder();
+		LongAdder expiries = new LongAdder();
+		LongAdder duplicateExpiries = new LongAdder();
+		LongAdder unknownExpiries = new LongAdder();
+		LongAdder earlyExpiries = new LongAdder();
+
+		TimedIDManager sessionManager = new TimedIDManager(store, entryArray -> {
+			expiries.increment();
+			String session = entryArray[SessionRecord.MESSAGE_INDEX].strip();
+			if(!expiredSessions.add(session)) duplicateExpiries.increment();
+			if(!appliedSessions.contains(session)) unknownExpiries.increment();
+			if(Long.parseLong(entryArray[SessionRecord.EXPIRY_INDEX].strip()) > System.currentTimeMillis()) earlyExpiries.increment();
+		});
+
+		long startTime = System.nanoTime();
+		try(ExecutorService workers = Executors.newFixedThreadPool(threads)) {
+			for(int i = 0; i < operations; i++) {
+				workers.execute(() -> {
+					ThreadLocalRandom random = ThreadLocalRandom.current();
+					String key = IDFiles.sessionKey(random.nextInt(keys));
+					try {
+						int operation = random.nextInt(10);
+						if(operation < 5) { // Applies, which replace whatever session the key had
+							String session = String.valueOf(NEXT_MESSAGE_ID.getAndIncrement());
+							appliedSessions.add(session);
+							sessionManager.appendEntry(new String[]{ key, session, String.valueOf(System.currentTimeMillis() + random.nextLong(MAX_LIFETIME_MILLIS)) });
+							applies.increment();
+						} else if(operation < 7) {
+							sessionManager.deleteEntry(key);
+							cancels.increment();
+						} else { // Link collection rewrites the session in place and must never revive an expired one
+							sessionManager.updateEntry(key, entryArray -> entryArray.clone());
+							updates.increment();
+						}
+					} catch(IOException e) {
+						throw new RuntimeException(e);
+					}
+				});
+			}
+		}
+		long busyNanos = System.nanoTime() - startTime;
+
+		long settleBy = System.currentTimeMillis() + SETTLE_MILLIS;
+		while((store.size() > 0 || armedSessions() > 0) && System.currentTimeMillis() < settleBy) {
+			Thread.sleep(50);
+		}
+		Thread.sleep(500); // Expiry callbacks run after the delete, let the last ones land
+
+		System.out.printf("%-8s %,d applies, %,d cancels, %,d updates on %d keys from %d threads in %,d ms, %,d expired%n", backend,
+				applies.sum(), cancels.sum(), updates.sum(), keys, threads, busyNanos / 1_000_000, expiries.sum());
+		check(failures, backend, "no session expired twice", duplicateExpiries.sum() == 0);
+		check(failures, backend, "only applied sessions expired", unknownExpiries.sum() == 0);
+		check(failures, backend, "no session expired before its deadline", earlyExpiries.sum() == 0);
+		check(failures, backend, "every session ran out or was cancelled (" + store.size() + " left)", store.size() == 0);
+		check(failures, backend, "no timer is left armed (" + armedSessions() + " left)", armedSessions() == 0);
+		store.close();
+	}
+
+	private static long armedSessions() { // Shared by every timed manager, and this run only has one
+		return Metrics.scrape().lines()
+				.filter(line -> line.startsWith("overture_active_sessions "))
+				.mapToLong(line -> Long.parseLong(line.substring(line.indexOf(' ') + 1).strip()))
+				.findFirst().orElse(0);
+	}
+
+	private static void check(List<String> failures, String backend, String description, boolean passed) {
+		if(!passed) failures.add(backend + ": " + description);
+	}
+
+}
@@ -0,0 +1,186 @@
+package org.example.benchmarks;
+
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.Role;
+import net.dv8tion.jda.api.entities.emoji.RichCustomEmoji;
+import net.dv8tion.jda.api.interactions.commands.build.Commands;
+import net.dv8tion.jda.api.interactions.commands.build.SlashCommandData;
+import net.dv8tion.jda.api.interactions.components.selections.SelectOption;
+import org.example.guilds.GuildContexts;
+import org.example.ids.idmanagers.IDManager;
+import org.example.ids.idmanagers.TimedIDManager;
+import org.example.ids.stores.IDStores;
+import org.example.launch.Launcher;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+import java.util.stream.Stream;
+
+public class StartupTime {
+
+	// Time from the shards being ready until every guild is loaded and its rank menu built, against FakeDiscord at a fixed
+	// REST latency. The baseline repeats what startup did before the rank snapshot: each guild in turn opened its stores
+	// and fetched every rank emoji missing from the cache with a blocking request, one after another, and the commands
+	// were uploaded on every boot. The current path is the Launcher's own: guilds load together through GuildContexts,
+	// emojis come from the snapshot while the lookups run in the background, and unchanged commands are not sent. It runs
+	// twice, cold with no snapshot or command hash on disk, then warm as every later boot is. The gateway login before
+	// ready is the same for both and is not part of the time. Fails when a warm boot is not faster than the baseline,
+	// or its menus are not complete at ready, or it uploads the commands again.
+	// "java -cp target/benchmarks.jar org.example.benchmarks.StartupTime [ranks per guild] [latency ms] [guilds...]"
+
+	private static final long FIRST_GUILD_ID = 1_200_000_000_000_000_000L;
+	private static final long SETTLE_TIMEOUT_MILLIS = 20_000;
+	private static final String SESSION_LABELS = "SessionChannelID, ApplicationMessageID, Timeout, UserID, VideoLinks\n";
+	private static final List<SlashCommandData> COMMANDS = List.of(Commands.slash("apply", "Apply for a new creator skill role.").setGuildOnly(true));
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int ranks = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+		long latencyMillis = args.length > 1 ? Long.parseLong(args[1]) : 50;
+		List<Integer> guildCounts = args.length > 2 ? Stream.of(args).skip(2).map(Integer::parseInt).toList() : List.of(1, 10);
+
+		run(FIRST_GUILD_ID - 1_000L, 1, ranks, 0, new ArrayList<>(), false); // Loads and compiles both paths before anything is timed
+
+		ArrayList<String> failures = new ArrayList<>();
+		System.out.printf("%d ranks per guild, %d ms per REST call%n", ranks, latencyMillis);
+		System.out.printf("%-7s %-9s %10s %14s %12s %16s %9s%n", "guilds", "boot", "ready ms", "menu done ms", "REST calls", "emojis at ready", "commands");
+		for(int i = 0; i < guildCounts.size(); i++) {
+			run(FIRST_GUILD_ID + i * 1_000L, guildCounts.get(i), ranks, latencyMillis, failures, true);
+		}
+
+		System.out.printf("%d failed%n", failures.size());
+		failures.forEach(failure -> System.out.println("  " + failure));
+		System.exit(failures.isEmpty() ? 0 : 1); // The expiry wheel threads would otherwise keep running
+	}
+
+	private static void run(long firstGuildId, int guildCount, int ranks, long latencyMillis, List<String> failures, boolean report) throws IOException, InterruptedException {
+		FakeDiscord discord = new FakeDiscord(new FakeDiscord.Settings(TimeUnit.MILLISECONDS.toMicros(latencyMillis), 0, 0, 0), firstGuildId, guildCount, ranks);
+		Path directory = Files.createTempDirectory("overture-startup");
+		Path baselineDirectory = Files.createDirectories(directory.resolve("baseline"));
+		Path currentDirectory = Files.createDirectories(directory.resolve("current"));
+		for(FakeDiscord.FakeGuild fakeGuild : discord.guilds()) {
+			for(Path root : new Path[]{ baselineDirectory, currentDirectory }) {
+				Path guildDirectory = Files.createDirectories(root.resolve(fakeGuild.guild().getId()));
+				Files.writeString(guildDirectory.resolve("roleIDs.txt"), fakeGuild.rankFile(ranks), StandardCharsets.UTF_8);
+				Files.writeString(guildDirectory.resolve("sessionIDs.txt"), SESSION_LABELS, StandardCharsets.UTF_8);
+			}
+		}
+		int totalRanks = guildCount * ranks;
+
+		// Baseline: one guild after another, each emoji a blocking request
+		long startRestCalls = discord.restCalls();
+		long startTime = System.nanoTime();
+		int baselineEmojis = 0;
+		for(FakeDiscord.FakeGuild fakeGuild : discord.guilds()) {
+			baselineEmojis += baselineLoad(fakeGuild.guild(), baselineDirectory.resolve(fakeGuild.guild().getId()));
+		}
+		discord.jda().updateCommands().addCommands(COMMANDS).queue();
+		Boot baseline = new Boot(System.nanoTime() - startTime, discord.restCalls() - startRestCalls, baselineEmojis, true);
+		if(report) baseline.print(guildCount, "baseline", baseline.readyNanos);
+
+		// Current, cold then warm, each with a fresh GuildContexts as after a restart
+		Path hashFile = currentDirectory.resolve("commandsHash.txt");
+		Boot cold = currentBoot("cold", discord, currentDirectory, hashFile, totalRanks, failures, report);
+		awaitSettled(() -> Files.exists(hashFile) && snapshotLines(discord, currentDirectory) == totalRanks ? 1 : 0, 1); // The lookups and upload finish in the background
+		Boot warm = currentBoot("warm", discord, currentDirectory, hashFile, totalRanks, failures, report);
+
+		String run = guildCount + " guilds";
+		if(warm.emojisAtReady != totalRanks) failures.add(run + ": a warm boot had " + warm.emojisAtReady + " of " + totalRanks + " menu emojis at ready");
+		if(warm.uploadedCommands) failures.add(run + ": a warm boot uploaded unchanged commands");
+		if(latencyMillis > 0 && warm.readyNanos >= baseline.readyNanos) {
+			failures.add(String.format("%s: a warm boot took %.1f ms, the baseline %.1f ms", run, warm.readyNanos / 1e6, baseline.readyNanos / 1e6));
+		}
+		if(cold.readyNanos > baseline.readyNanos && latencyMillis > 0) {
+			failures.add(String.format("%s: a cold boot took %.1f ms, the baseline %.1f ms", run, cold.readyNanos / 1e6, baseline.readyNanos / 1e6));
+		}
+
+		discord.shutdown();
+		try(Stream<Path> files = Files.walk(directory)) {
+			files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+		}
+	}
+
+	// The Launcher's steps once the shards are ready, timed until every guild is loaded and again until every menu has its emojis
+	private static Boot currentBoot(String name, FakeDiscord discord, Path directory, Path hashFile, int totalRanks, List<String> failures, boolean report) throws InterruptedException {
+		GuildContexts guildContexts = new GuildContexts(directory.toFile());
+		long startRestCalls = discord.restCalls();
+		long startTime = System.nanoTime();
+		boolean uploadedCommands = Launcher.updateCommandsIfChanged(discord.jda(), COMMANDS, hashFile);
+		Launcher.loadGuilds(guildContexts, discord.jda().getGuilds());
+		long readyNanos = System.nanoTime() - startTime;
+		long restCalls = discord.restCalls() - startRestCalls;
+		IntSupplier menuEmojis = () -> {
+			int emojis = 0;
+			for(Guild guild : discord.jda().getGuilds()) {
+				for(SelectOption option : guildContexts.get(guild).getRankRegistry().getMenuOptions()) {
+					if(option.getEmoji() != null) emojis++;
+				}
+			}
+			return emojis;
+		};
+		int emojisAtReady = menuEmojis.getAsInt();
+		Boot boot = new Boot(readyNanos, restCalls, emojisAtReady, uploadedCommands);
+		if(!awaitSettled(menuEmojis, totalRanks)) failures.add(discord.guilds().size() + " guilds: the rank menus never got all their emojis");
+		if(report) boot.print(discord.guilds().size(), name, System.nanoTime() - startTime);
+		return boot;
+	}
+
+	// The load one guild went through before the rank snapshot, as it was when the bot served a single guild
+	private static int baselineLoad(Guild guild, Path guildDirectory) throws IOException {
+		TimedIDManager sessionManager = new TimedIDManager(IDStores.openSessions(guildDirectory.resolve("sessionIDs.txt").toFile()), entryArray -> {});
+		sessionManager.reconcile();
+		IDManager rankManager = new IDManager(guildDirectory.resolve("roleIDs.txt").toFile(), 0);
+		ArrayList<SelectOption> options = new ArrayList<>();
+		int emojis = 0;
+		for(String[] entryArray : rankManager.orderedStream().toList()) {
+			Role role = guild.getRoleById(entryArray[0]);
+			if(role == null) continue;
+			RichCustomEmoji emoji = guild.getEmojiById(entryArray[1]);
+			if(emoji == null) emoji = guild.retrieveEmojiById(entryArray[1]).complete(); // Not in the emoji cache yet, so ask Discord
+			SelectOption option = SelectOption.of(role.getName(), role.getId());
+			options.add(emoji == null ? option : option.withEmoji(emoji));
+			if(emoji != null) emojis++;
+		}
+		guild.getForumChannelsByName("applications", true);
+		return emojis;
+	}
+
+	private static int snapshotLines(FakeDiscord discord, Path directory) {
+		int lines = 0;
+		for(FakeDiscord.FakeGuild fakeGuild : discord.guilds()) {
+			Path snapshot = directory.resolve(fakeGuild.guild().getId()).resolve("rankSnapshot.txt");
+			try {
+				if(Files.exists(snapshot)) lines += (int) Files.readAllLines(snapshot, StandardCharsets.UTF_8).stream().filter(line -> !line.isBlank()).count();
+			} catch(IOException e) { // Caught mid replace, read again on the next poll
+				return 0;
+			}
+		}
+		return lines;
+	}
+
+	private static boolean awaitSettled(IntSupplier progress, int target) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SETTLE_TIMEOUT_MILLIS);
+		while(progress.getAsInt() < target) {
+			if(System.nanoTime() > deadline) return false;
+			Thread.sleep(1);
+		}
+		return true;
+	}
+
+	private record Boot(long readyNanos, long restCalls, int emojisAtReady, boolean uploadedCommands) {
+
+		private void print(int guildCount, String name, long menuDoneNanos) {
+			System.out.printf("%-7d %-9s %10.1f %14.1f %12d %16d %9s%n", guildCount, name, readyNanos / 1e6, menuDoneNanos / 1e6,
+					restCalls, emojisAtReady, uploadedCommands ? "sent" : "skipped");
+		}
+
+	}
+
+}
@@ -0,0 +1,55 @@
+package org.example.benchmarks;
+
+import org.example.ids.idmanagers.TimedIDManager;
+import org.example.ids.timing.HashedTimingWheel;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TimedIDManagerBenchmark {
+
+	private static final long SESSION_MILLIS = 600000;
+
+	private File idFile;
+	private TimedIDManager sessionManager;
+	private HashedTimingWheel timingWheel;
+	private int nextKey;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		idFile = IDFiles.createSessionFile(0, 0);
+		sessionManager = new TimedIDManager(idFile, entryArray -> {}, 0, 2);
+		timingWheel = new HashedTimingWheel(100, TimeUnit.MILLISECONDS, 512, "benchmark-wheel");
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		idFile.delete();
+	}
+
+	@Benchmark
+	public boolean wheelScheduleAndCancel() {
+		return timingWheel.schedule(timeout -> {}, SESSION_MILLIS, TimeUnit.MILLISECONDS).cancel();
+	}
+
+	@Benchmark
+	public void startExpiryTimer() { // Re-arms a bounded set of keys, the way repeated /apply calls do
+		sessionManager.startExpiryTimer(IDFiles.sessionEntry(nextKey++ & 0xFFFF, System.currentTimeMillis() + SESSION_MILLIS));
+	}
+
+	@Benchmark
+	public void appendAndDeleteSession() throws IOException { // A full session start and cancel, store and timer together
+		String[] entryArray = IDFiles.sessionEntry(nextKey++, System.currentTimeMillis() + SESSION_MILLIS);
+		sessionManager.appendEntry(entryArray);
+		sessionManager.deleteEntry(entryArray[0]);
+	}
+
+}
@@ -0,0 +1,100 @@
+package org.example.commands;
+
+import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
+import net.dv8tion.jda.api.hooks.ListenerAdapter;
+import net.dv8tion.jda.api.interactions.commands.build.SlashCommandData;
+import org.example.exceptions.RequestException;
+import org.example.metrics.Counter;
+import org.example.metrics.LatencyHistogram;
+import org.example.metrics.Metrics;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+public class CommandRouter extends ListenerAdapter {
+
+	// Owns every slash command: its definition, the one handler that answers it and the pool it runs on. Each command is
+	// acknowledged the moment it arrives, before it waits for anything, so a busy pool or a slow handler can never miss
+	// Discord's three second deadline, and handlers only ever answer through the hook. Every command has its own bounded
+	// pool, so a flood of one command fills only its own queue and the others keep their workers.
+	// Routes are all added before the router is registered with JDA and never change after.
+	//
+	// Pool sizes are read from -Doverture.bulkhead.<command>=<workers>/<queue>, e.g. 2/16.
+
+	private static final String BULKHEAD_PROPERTY_PREFIX = "overture.bulkhead.";
+
+	private static final Counter ACK_FAILURES = Metrics.counter("overture_command_ack_failures_total", "Commands Discord would not let the bot acknowledge");
+	private static final Counter REJECTED = Metrics.counter("overture_command_rejected_total", "Commands turned away because their queue was full");
+	private static final Counter FAILED = Metrics.counter("overture_command_failed_total", "Commands whose handler threw instead of answering");
+	private static final LatencyHistogram ACK_LATENCY = Metrics.histogram("overture_command_ack_seconds", "Time from a command reaching the bot until Discord accepted its acknowledgement");
+	private static final LatencyHistogram QUEUE_LATENCY = Metrics.histogram("overture_command_queue_seconds", "Time a command waited for a worker of its own pool");
+
+	private final HashMap<String, Route> routes = new HashMap<>();
+	private final ArrayList<SlashCommandData> commands = new ArrayList<>();
+
+	public CommandRouter route(SlashCommandData command, CommandHandler handler, int defaultWorkers, int defaultQueue) {
+		String name = command.getName();
+		int workers = defaultWorkers;
+		int queue = defaultQueue;
+		String bulkhead = System.getProperty(BULKHEAD_PROPERTY_PREFIX + name);
+		if(bulkhead != null) {
+			String[] parts = bulkhead.split("/");
+			if(parts.length != 2) throw new IllegalArgumentException("Expected <workers>/<queue> for " + BULKHEAD_PROPERTY_PREFIX + name + " but got " + bulkhead);
+			workers = Integer.parseInt(parts[0].strip());
+			queue = Integer.parseInt(parts[1].strip());
+		}
+		if(routes.containsKey(name)) throw new IllegalArgumentException("Command " + name + " already has a handler");
+
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queue),
+				Thread.ofVirtual().name("command-" + name + "-", 0).factory()); // Handlers block on Discord, which costs a virtual thread nothing
+		Metrics.gauge("overture_command_" + name + "_queue_depth", "/" + name + " commands waiting for a worker", () -> executor.getQueue().size());
+		routes.put(name, new Route(handler, executor));
+		commands.add(command);
+		return this;
+	}
+
+	public List<SlashCommandData> getCommands() { return List.copyOf(commands); }
+
+	@Override
+	public void onSlashCommandInteraction(SlashCommandInteractionEvent event) {
+		long startTime = System.nanoTime();
+		Route route = routes.get(event.getName());
+		if(route == null) { // Discord can still show a command from an older upload for a while
+			event.reply("This command is no longer available.").setEphemeral(true).queue();
+			return;
+		}
+
+		event.deferReply(true).queue(hook -> ACK_LATENCY.recordSince(startTime), throwable -> {
+			ACK_FAILURES.increment();
+			throwable.printStackTrace();
+		});
+		try {
+			route.executor.execute(() -> {
+				QUEUE_LATENCY.recordSince(startTime);
+				try {
+					route.handler.handle(event);
+				} catch(Exception e) { // The reply was deferred, so without an answer here the user is left on "thinking..." for good
+					FAILED.increment();
+					event.getHook().sendMessage(e instanceof RequestException ? e.getMessage() : "Something went wrong! Please try again.").queue();
+					if(!(e instanceof RequestException)) e.printStackTrace();
+				}
+			});
+		} catch(RejectedExecutionException e) {
+			REJECTED.increment();
+			event.getHook().sendMessage("The bot is busy right now! Please try again in a moment.").queue();
+		}
+	}
+
+	@FunctionalInterface
+	public interface CommandHandler {
+		void handle(SlashCommandInteractionEvent event) throws Exception; // Called after the command was deferred, answer through its hook
+	}
+
+	private record Route(CommandHandler handler, ThreadPoolExecutor executor) {}
+
+}
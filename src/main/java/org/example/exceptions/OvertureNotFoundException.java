@@ -1,9 +0,0 @@
-package org.example.exceptions;
-
-public class OvertureNotFoundException extends RuntimeException {
-
-	public OvertureNotFoundException(String errorMessage) {
-		super(errorMessage);
-	}
-
-}
@@ -6,4 +6,8 @@ public class RequestException extends RuntimeException {
 		super(errorMessage);
 	}
 
+	public RequestException(String errorMessage, Throwable cause) {
+		super(errorMessage, cause);
+	}
+
 }
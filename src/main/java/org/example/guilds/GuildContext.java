@@ -0,0 +1,85 @@
+package org.example.guilds;
+
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.channel.concrete.ForumChannel;
+import org.example.ids.idmanagers.IDManager;
+import org.example.ids.idmanagers.TimedIDManager;
+import org.example.ids.stores.IDStores;
+import org.example.ranks.RankRegistry;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+public class GuildContext {
+
+	// Everything the bot keeps for one guild: its session, rank and icon stores, its rank menu and its applications forum.
+	// Every guild has its own folder, files, journals and locks, so work in one guild never waits on another.
+
+	static final String SESSION_FILE = "sessionIDs.txt";
+	static final String RANK_FILE = "roleIDs.txt";
+	static final String RANK_SNAPSHOT_FILE = "rankSnapshot.txt";
+	static final String ICON_FILE = "iconHashes.txt";
+	private static final String SESSION_LABELS = "SessionChannelID, ApplicationMessageID, Timeout, UserID, VideoLinks";
+	private static final String RANK_LABELS = "RoleID, EmojiID";
+	private static final String ICON_LABELS = "IconHash, EmojiID";
+	private static final String APPLICATION_CHANNEL_NAME = "applications";
+
+	private final long guildId;
+	private final JDA shard;
+	private final TimedIDManager sessionManager;
+	private final RankRegistry rankRegistry;
+	private final IDManager iconHashes; // Content hash of each uploaded icon to the emoji made from it
+	private volatile ForumChannel applicationChannel; // Null until the forum exists
+
+	GuildContext(Guild guild, File directory, GuildContexts owner) {
+		guildId = guild.getIdLong();
+		shard = guild.getJDA();
+		sessionManager = new TimedIDManager(
+				IDStores.openSessions(createIfAbsent(new File(directory, SESSION_FILE), SESSION_LABELS)),
+				entryArray -> owner.expireSession(this, entryArray)
+		);
+		rankRegistry = new RankRegistry(
+				guild,
+				new IDManager(createIfAbsent(new File(directory, RANK_FILE), RANK_LABELS), 0),
+				new File(directory, RANK_SNAPSHOT_FILE)
+		);
+		iconHashes = new IDManager(createIfAbsent(new File(directory, ICON_FILE), ICON_LABELS), 0);
+
+		List<ForumChannel> forums = guild.getForumChannelsByName(APPLICATION_CHANNEL_NAME, true);
+		if(forums.isEmpty()) { // The first channel named applications becomes the guild's designated channel
+			guild.createForumChannel(APPLICATION_CHANNEL_NAME).queue(forumChannel -> applicationChannel = forumChannel, Throwable::printStackTrace);
+		} else {
+			applicationChannel = forums.get(0);
+		}
+	}
+
+	public long getGuildId() { return guildId; }
+
+	public Guild getGuild() { return shard.getGuildById(guildId); } // Looked up each time, the cached guild is replaced on reconnect
+
+	public JDA getShard() { return shard; }
+
+	public TimedIDManager getSessionManager() { return sessionManager; }
+
+	public RankRegistry getRankRegistry() { return rankRegistry; }
+
+	public IDManager getIconHashes() { return iconHashes; }
+
+	public ForumChannel getApplicationChannel() { return applicationChannel; }
+
+	private static File createIfAbsent(File idFile, String labels) { // New guilds start with empty stores
+		if(!idFile.exists()) {
+			try {
+				Files.writeString(idFile.toPath(), labels + "\n", StandardCharsets.UTF_8);
+			} catch(IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+		return idFile;
+	}
+
+}
@@ -0,0 +1,135 @@
+package org.example.guilds;
+
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.events.emoji.GenericEmojiEvent;
+import net.dv8tion.jda.api.events.guild.GuildJoinEvent;
+import net.dv8tion.jda.api.events.guild.GuildReadyEvent;
+import net.dv8tion.jda.api.events.role.GenericRoleEvent;
+import net.dv8tion.jda.api.hooks.ListenerAdapter;
+import org.example.launch.Launcher;
+import org.example.metrics.LatencyHistogram;
+import org.example.metrics.Metrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+public class GuildContexts extends ListenerAdapter {
+
+	// Hands out each guild's context, loading it the first time the guild is seen. Loading happens outside the map,
+	// so a slow guild only holds up callers asking for that same guild. Contexts stay loaded after the bot leaves a
+	// guild so its sessions can still time out, and a rejoin picks the same context back up.
+
+	private static final LatencyHistogram LOAD_LATENCY = Metrics.histogram("overture_guild_load_seconds", "Time taken to load one guild's stores and rank menu");
+
+	private final File rootDirectory;
+	private final ConcurrentHashMap<Long, CompletableFuture<GuildContext>> contexts;
+	private final ConcurrentHashMap<String, GuildContext> sessionOwners; // DM channel id to the guild its session was started in
+	private volatile BiConsumer<GuildContext, String[]> sessionExpiryHandler = (context, entryArray) -> {};
+
+	public GuildContexts(File rootDirectory) {
+		this.rootDirectory = rootDirectory;
+		contexts = new ConcurrentHashMap<>();
+		sessionOwners = new ConcurrentHashMap<>();
+		Metrics.gauge("overture_guilds_loaded", "Guilds with a loaded context", contexts::size);
+	}
+
+	public void setSessionExpiryHandler(BiConsumer<GuildContext, String[]> handler) { sessionExpiryHandler = handler; }
+
+	public GuildContext get(Guild guild) {
+		long guildId = guild.getIdLong();
+		CompletableFuture<GuildContext> loading = new CompletableFuture<>();
+		CompletableFuture<GuildContext> existing = contexts.putIfAbsent(guildId, loading);
+		if(existing != null) return existing.join();
+
+		try {
+			loading.complete(load(guild));
+		} catch(RuntimeException e) { // Let the next caller try again
+			contexts.remove(guildId, loading);
+			loading.completeExceptionally(e);
+		}
+		return loading.join();
+	}
+
+	public GuildContext getSessionOwner(String userDmId) { return sessionOwners.get(userDmId); }
+
+	// A DM holds one session at a time. Returns the other guild that held it until now, if any, so its session can be ended.
+	public GuildContext bindSession(String userDmId, GuildContext context) {
+		GuildContext previousContext = sessionOwners.put(userDmId, context);
+		return previousContext == context ? null : previousContext;
+	}
+
+	public void unbindSession(String userDmId, GuildContext context) {
+		sessionOwners.remove(userDmId, context);
+	}
+
+	@Override
+	public void onGuildReady(GuildReadyEvent event) {
+		get(event.getGuild());
+	}
+
+	@Override
+	public void onGuildJoin(GuildJoinEvent event) {
+		get(event.getGuild());
+	}
+
+	@Override
+	public void onGenericRole(GenericRoleEvent event) { // Only the guild's own registry sees its rank changes
+		get(event.getGuild()).getRankRegistry().onEvent(event);
+	}
+
+	@Override
+	public void onGenericEmoji(GenericEmojiEvent event) {
+		get(event.getGuild()).getRankRegistry().onEvent(event);
+	}
+
+	void expireSession(GuildContext context, String[] entryArray) { // Retried when the handler throws, so unbinding must stay safe to repeat
+		sessionOwners.computeIfPresent(entryArray[0], (userDmId, owner) -> owner == context && !context.getSessionManager().containsKey(userDmId) ? null : owner);
+		sessionExpiryHandler.accept(context, entryArray);
+	}
+
+	private GuildContext load(Guild guild) {
+		long startTime = System.nanoTime();
+		File directory = new File(rootDirectory, guild.getId());
+		if(!directory.exists()) {
+			directory.mkdirs();
+			if(guild.getIdLong() == Launcher.OVERTURE_ID) migrateSingleGuildFiles(guild, directory);
+		}
+
+		GuildContext context = new GuildContext(guild, directory, this);
+		List<String[]> liveEntries;
+		try {
+			liveEntries = context.getSessionManager().reconcile(); // Sessions that ran out while the bot was down are timed out in the background
+		} catch(IOException e) {
+			throw new RuntimeException(e);
+		}
+		for(String[] entryArray : liveEntries) { // Account for timers from last boot
+			sessionOwners.put(entryArray[0], context);
+			context.getSessionManager().startExpiryTimer(entryArray);
+		}
+		LOAD_LATENCY.recordSince(startTime);
+		return context;
+	}
+
+	// Before sharding the bot only served Overture, whose stores sat directly in the ids folder and whose commands were
+	// registered on the guild itself. Both move over once, the first time Overture gets a folder of its own.
+	private void migrateSingleGuildFiles(Guild guild, File directory) {
+		Path legacyDirectory = rootDirectory.getParentFile().toPath();
+		for(String fileName : new String[]{ GuildContext.SESSION_FILE, GuildContext.SESSION_FILE + ".journal", GuildContext.RANK_FILE, GuildContext.RANK_FILE + ".journal", GuildContext.RANK_SNAPSHOT_FILE }) {
+			Path legacyFile = legacyDirectory.resolve(fileName);
+			if(!Files.exists(legacyFile)) continue;
+			try {
+				Files.move(legacyFile, directory.toPath().resolve(fileName));
+			} catch(IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+		guild.updateCommands().queue(); // The global commands replace these
+	}
+
+}
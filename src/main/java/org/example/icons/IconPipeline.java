@@ -0,0 +1,187 @@
+package org.example.icons;
+
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.Icon;
+import net.dv8tion.jda.api.entities.emoji.RichCustomEmoji;
+import net.dv8tion.jda.api.utils.FileProxy;
+import org.example.exceptions.RequestException;
+import org.example.ids.idmanagers.IDManager;
+import org.example.metrics.Counter;
+import org.example.metrics.LatencyHistogram;
+import org.example.metrics.Metrics;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+public class IconPipeline {
+
+	// Turns an uploaded image into a guild emoji without tying up a shared thread. Reading, hashing, decoding and
+	// scaling run on a small pool of their own with a bounded queue, never the common pool, and Discord is only ever
+	// called through submitted RestActions. Each guild keeps the content hash of every icon it has turned into an
+	// emoji, so uploading the same image again reuses that emoji instead of processing and creating it a second time.
+	// Hashes are the first eight bytes of a SHA-256, which keeps them numeric for every store backend.
+
+	public static final int MAX_UPLOAD_BYTES = 8 * 1024 * 1024; // Anything larger is refused before it is decoded
+	public static final int MAX_ICON_BYTES = 256 * 1024; // Discord's limit for emojis and role icons
+	public static final int ICON_SIZE = 128; // Emojis never show larger, so a downscaled icon loses nothing
+	private static final int MAX_DIMENSION = 4096; // A small file can still decode to hundreds of megabytes of pixels
+
+	private static final Counter ICON_REUSES = Metrics.counter("overture_icon_reuses_total", "Uploaded icons matched to an emoji the guild already had");
+	private static final Counter ICONS_DOWNSCALED = Metrics.counter("overture_icons_downscaled_total", "Uploaded icons scaled down to fit Discord's limits");
+	private static final Counter ICONS_REJECTED = Metrics.counter("overture_icons_rejected_total", "Icons turned away because the pipeline's queue was full");
+	private static final LatencyHistogram PREPARE_LATENCY = Metrics.histogram("overture_icon_prepare_seconds", "Time spent validating and scaling one icon");
+
+	private final ThreadPoolExecutor executor;
+
+	public IconPipeline(int workers, int queue) {
+		executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queue),
+				Thread.ofPlatform().name("icon-worker-", 0).daemon().factory()); // Decoding and scaling keep a core busy
+		Metrics.gauge("overture_icon_queue_depth", "Icons waiting for a pipeline worker", () -> executor.getQueue().size());
+	}
+
+	// Reuses the guild's emoji for an identical image when it still exists, otherwise prepares the image and creates one
+	public CompletableFuture<RichCustomEmoji> findOrCreateEmoji(Guild guild, IDManager iconHashes, FileProxy iconProxy, String emojiName) {
+		return download(iconProxy).thenCompose(upload -> {
+			String hashKey = String.valueOf(upload.contentHash());
+			String[] entryArray = iconHashes.readForEntry(hashKey);
+			RichCustomEmoji existingEmoji = entryArray == null ? null : guild.getEmojiById(entryArray[1].strip());
+			if(existingEmoji != null) {
+				ICON_REUSES.increment();
+				return CompletableFuture.completedFuture(existingEmoji);
+			}
+
+			return prepare(upload.bytes())
+					.thenCompose(icon -> guild.createEmoji(emojiName, icon).submit())
+					.thenApply(emoji -> {
+						try { // Replaces a mapping whose emoji was deleted
+							iconHashes.appendEntry(new String[]{ hashKey, emoji.getId() });
+						} catch(IOException e) { // The emoji exists either way, only the next reuse is lost
+							e.printStackTrace();
+						}
+						return emoji;
+					});
+		});
+	}
+
+	// The body streams in as it is read, so reading and hashing happen on the pipeline's threads too
+	public CompletableFuture<Upload> download(FileProxy iconProxy) {
+		return iconProxy.download().thenCompose(stream -> submit(() -> readUpload(stream)).whenComplete((upload, throwable) -> {
+			if(throwable != null) closeQuietly(stream); // Turned away before a worker could read it
+		}));
+	}
+
+	// Small enough icons go to Discord untouched, larger ones are decoded and scaled to fit
+	public CompletableFuture<Icon> prepare(byte[] bytes) {
+		return submit(() -> {
+			long startTime = System.nanoTime();
+			try {
+				return Icon.from(fitToLimits(bytes));
+			} finally {
+				PREPARE_LATENCY.recordSince(startTime);
+			}
+		});
+	}
+
+	private Upload readUpload(InputStream stream) throws IOException {
+		try(stream) {
+			byte[] bytes = stream.readNBytes(MAX_UPLOAD_BYTES + 1);
+			if(bytes.length > MAX_UPLOAD_BYTES) throw new RequestException("The icon is larger than " + MAX_UPLOAD_BYTES / (1024 * 1024) + " MB!");
+			return new Upload(contentHash(bytes), bytes);
+		}
+	}
+
+	private byte[] fitToLimits(byte[] bytes) throws IOException {
+		checkDimensions(bytes);
+		if(bytes.length <= MAX_ICON_BYTES) return bytes;
+
+		BufferedImage image = ImageIO.read(new ByteArrayInputStream(bytes));
+		if(image == null) throw new RequestException("The icon is not an image the bot can read!");
+
+		double scale = Math.min(1.0, (double) ICON_SIZE / Math.max(image.getWidth(), image.getHeight()));
+		int width = Math.max(1, (int) Math.round(image.getWidth() * scale));
+		int height = Math.max(1, (int) Math.round(image.getHeight() * scale));
+		BufferedImage scaledImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D graphics = scaledImage.createGraphics();
+		try {
+			graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+			graphics.drawImage(image.getScaledInstance(width, height, Image.SCALE_AREA_AVERAGING), 0, 0, null); // Averages away detail instead of aliasing it
+		} finally {
+			graphics.dispose();
+		}
+
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		ImageIO.write(scaledImage, "png", output);
+		if(output.size() > MAX_ICON_BYTES) throw new RequestException("The icon is still too large after scaling it down!");
+		ICONS_DOWNSCALED.increment();
+		return output.toByteArray();
+	}
+
+	// Reads only the header, so a small file that decodes to a huge image is refused before any pixels are allocated
+	private void checkDimensions(byte[] bytes) throws IOException {
+		try(ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(bytes))) {
+			Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+			if(!readers.hasNext()) throw new RequestException("The icon is not an image the bot can read!");
+			ImageReader reader = readers.next();
+			try {
+				reader.setInput(input, true, true);
+				if(reader.getWidth(0) > MAX_DIMENSION || reader.getHeight(0) > MAX_DIMENSION) throw new RequestException("The icon is larger than " + MAX_DIMENSION + " pixels across!");
+			} finally {
+				reader.dispose();
+			}
+		}
+	}
+
+	private static void closeQuietly(InputStream stream) {
+		try {
+			stream.close();
+		} catch(IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	// Fails the future instead of the caller when the queue is full, the pool never runs anything on the caller's thread
+	private <T> CompletableFuture<T> submit(Callable<T> task) {
+		CompletableFuture<T> future = new CompletableFuture<>();
+		try {
+			executor.execute(() -> {
+				try {
+					future.complete(task.call());
+				} catch(Exception e) {
+					future.completeExceptionally(e);
+				}
+			});
+		} catch(RejectedExecutionException e) {
+			ICONS_REJECTED.increment();
+			future.completeExceptionally(new RequestException("Too many icons are being processed right now! Please try again in a moment.", e));
+		}
+		return future;
+	}
+
+	public static long contentHash(byte[] bytes) {
+		try {
+			return ByteBuffer.wrap(MessageDigest.getInstance("SHA-256").digest(bytes)).getLong();
+		} catch(NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	public record Upload(long contentHash, byte[] bytes) {}
+
+}
@@ -1,16 +1,28 @@
 package org.example.ids.idmanagers;
 
-import java.io.*;
+import org.example.ids.stores.IDStore;
+import org.example.ids.stores.IDStores;
+
+import java.io.File;
+import java.io.IOException;
 import java.util.LinkedList;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class IDManager {
 
-	protected final File idFile;
+	protected final IDStore store; // Every read and write goes straight through, the store handles its own locking
 	protected final int keyIndex;
 
+	public IDManager(IDStore store) {
+		this.store = store;
+		this.keyIndex = store.getKeyIndex();
+	}
+
 	public IDManager(File file, int keyIndex) {
-		this.idFile = file;
-		this.keyIndex = keyIndex;
+		this(IDStores.open(file, keyIndex, IDStore.NO_EXPIRY));
 	}
 
 	public IDManager(String path, int keyIndex) {
@@ -18,95 +30,48 @@ public class IDManager {
 	}
 
 	public void deleteEntry(String key) throws IOException {
-		BufferedReader reader = new BufferedReader(new FileReader(idFile));
-		LinkedList<String> fileContents = new LinkedList<>();
-		String line;
-		while((line = reader.readLine()) != null) {
-			if(!line.split(", ")[keyIndex].strip().equals(key)) {
-				fileContents.addLast(line);
-			}
-		}
-		reader.close();
-
-		BufferedWriter writer = new BufferedWriter(new FileWriter(idFile));
-		for(String s : fileContents) {
-			writer.append(s).append("\n");
-		}
-		writer.close();
+		readAndDeleteEntry(key);
 	}
 
 	public void appendEntry(String[] entryData) throws IOException {
-		BufferedWriter writer = new BufferedWriter(new FileWriter(idFile, true));
-		StringBuilder stringBuilder = new StringBuilder();
-		for(String data : entryData) {
-			stringBuilder.append(data).append(", ");
-		}
-		stringBuilder.append(entryData[entryData.length - 1]).append("\n"); // We need a new line instead of a comma for the last part of entryData
-		writer.append(stringBuilder.toString());
-		writer.close();
+		store.put(entryData);
 	}
 
-	public boolean containsKey(String key) throws IOException {
-		BufferedReader reader = new BufferedReader(new FileReader(idFile));
-		String line;
-		while((line = reader.readLine()) != null) {
-			if(line.split(", ")[keyIndex].strip().equals(key)) {
-				reader.close();
-				return true;
-			}
-		}
-		reader.close();
-		return false;
+	// Rewrites an existing entry in place. Returns the stored entry, or null if the key is absent.
+	// Returning the same array from the update leaves the entry and the journal untouched.
+	public String[] updateEntry(String key, UnaryOperator<String[]> update) throws IOException {
+		return store.update(key, update);
 	}
 
-	public String[] readForEntry(String key) throws IOException {
-		BufferedReader reader = new BufferedReader(new FileReader(idFile));
-		String line;
-		while((line = reader.readLine()) != null) {
-			String[] lineArray = line.split(", ");
-			if(lineArray[keyIndex].strip().equals(key)) {
-				reader.close();
-				return lineArray;
-			}
-		}
-		reader.close();
-		return null;
+	public boolean containsKey(String key) {
+		return store.contains(key);
+	}
+
+	public String[] readForEntry(String key) {
+		return store.get(key);
 	}
 
 	public String[] readAndDeleteEntry(String key) throws IOException {
-		BufferedReader reader = new BufferedReader(new FileReader(idFile));
-		LinkedList<String> fileContents = new LinkedList<>();
-		String[] targetEntry = null;
-		String line;
-		while((line = reader.readLine()) != null) {
-			String[] entryArray = line.split(", ");
-			if(entryArray[keyIndex].strip().equals(key)) {
-				targetEntry = entryArray;
-			} else {
-				fileContents.addLast(line);
-			}
-		}
-		reader.close();
-
-		BufferedWriter writer = new BufferedWriter(new FileWriter(idFile));
-		for(String s : fileContents) {
-			writer.append(s).append("\n");
-		}
-		writer.close();
-
-		return targetEntry;
+		return store.delete(key);
+	}
+
+	protected String[] readAndDeleteEntryIf(String key, Predicate<String[]> condition) throws IOException {
+		return store.deleteIf(key, condition);
+	}
+
+	// Entries are read as the stream is consumed, so filtering and stopping early cost only what was looked at.
+	// Use orderedStream when insertion order matters.
+	public Stream<String[]> stream() {
+		return store.stream();
+	}
+
+	public Stream<String[]> orderedStream() {
+		return store.orderedStream();
 	}
 
-	public LinkedList<String[]> dump(boolean includeLabels) throws IOException {
-		BufferedReader reader = new BufferedReader(new FileReader(idFile));
-		LinkedList<String[]> entryList = new LinkedList<>();
-		String line;
-		if(!includeLabels) reader.readLine();
-		while((line = reader.readLine()) != null) {
-			entryList.addLast(line.split(", "));
-		}
-		reader.close();
-		return entryList;
+	public LinkedList<String[]> dump(boolean includeLabels) {
+		Stream<String[]> labels = includeLabels && store.getLabels() != null ? Stream.<String[]>of(store.getLabels()) : Stream.empty();
+		return Stream.concat(labels, orderedStream()).collect(Collectors.toCollection(LinkedList::new));
 	}
 
 }
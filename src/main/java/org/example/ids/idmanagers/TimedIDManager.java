@@ -1,27 +1,69 @@
 package org.example.ids.idmanagers;
 
+import org.example.ids.sessions.SessionRecord;
+import org.example.ids.stores.IDStore;
+import org.example.ids.stores.IDStores;
+import org.example.ids.stores.SessionIDStore;
+import org.example.ids.timing.ExpiryExecutor;
+import org.example.ids.timing.HashedTimingWheel;
+import org.example.metrics.Counter;
+import org.example.metrics.LatencyHistogram;
+import org.example.metrics.Metrics;
+
 import java.io.File;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 public class TimedIDManager extends IDManager {
 
-	// TODO Sort out key for IDManager too
+	private static final long EXPIRY_TICK_MILLIS = 100;
+	private static final int EXPIRY_WHEEL_SIZE = 512; // About 51 seconds per rotation, longer sessions wait out extra rounds
+	private static final int LOCK_STRIPES = 64;
+	private static final long RECONCILED_EXPIRY_SPACING_NANOS = TimeUnit.MILLISECONDS.toNanos(40); // 25 edits a second, half of Discord's global limit
+
+	private static final Counter EXPIRIES = Metrics.counter("overture_session_expiries_total", "Sessions that timed out");
+	private static final LatencyHistogram EXPIRY_LAG = Metrics.histogram("overture_expiry_lag_seconds", "How late each expiry ran after its deadline");
+	private static final Counter RECONCILED_EXPIRIES = Metrics.counter("overture_session_reconciled_expiries_total", "Sessions found expired on boot and deleted together");
+	private static final LongAdder ARMED_TIMEOUTS = new LongAdder();
+	private static final AtomicLong NEXT_RECONCILED_EXPIRY = new AtomicLong(System.nanoTime()); // Shared, so guilds loading together still take turns
+	// One wheel serves every store, so a bot in many guilds still runs a single expiry thread. Scheduling takes no lock.
+	private static final HashedTimingWheel EXPIRY_WHEEL = new HashedTimingWheel(EXPIRY_TICK_MILLIS, TimeUnit.MILLISECONDS, EXPIRY_WHEEL_SIZE, "session-expiry");
+	// The wheel only hands due sessions to these workers, which do the store writes and run the expiry callbacks
+	private static final ExpiryExecutor EXPIRY_EXECUTOR = new ExpiryExecutor(EXPIRY_WHEEL, Integer.getInteger("overture.expiry.workers", 4), 10_000, 64, "session-expiry-worker");
+
+	static {
+		Metrics.gauge("overture_active_sessions", "Sessions with an armed expiry timer", ARMED_TIMEOUTS::sum);
+	}
 
-	private final Timer expiryTimer;
-	private final HashMap<String, TimerTask> timerTasks;
+	private final ConcurrentHashMap<String, HashedTimingWheel.Timeout> expiryTimeouts; // Only holds armed timeouts
+	// Writing an entry and arming its timer happen together under the key's stripe, so two writers of one key cannot leave
+	// the stored entry with the other's timer, which would never find it due. Locks rather than monitors, since the store
+	// write waits on the disk and the callers are virtual threads.
+	private final ReentrantLock[] keyLocks;
 	private final Consumer<String[]> expirySequence;
 	private final int lifetimeIndex;
 
-	public TimedIDManager(File file, Consumer<String[]> onExpiry, int keyIndex, int lifetimeIndex) {
-		super(file, keyIndex);
-		timerTasks = new HashMap<>();
-		expiryTimer = new Timer(true);
+	public TimedIDManager(IDStore store, Consumer<String[]> onExpiry) {
+		super(store);
+		expiryTimeouts = new ConcurrentHashMap<>();
+		keyLocks = new ReentrantLock[LOCK_STRIPES];
+		for(int i = 0; i < LOCK_STRIPES; i++) {
+			keyLocks[i] = new ReentrantLock();
+		}
 		this.expirySequence = onExpiry;
-		this.lifetimeIndex = lifetimeIndex;
+		this.lifetimeIndex = store.getExpiryIndex();
+	}
+
+	public TimedIDManager(File file, Consumer<String[]> onExpiry, int keyIndex, int lifetimeIndex) {
+		this(IDStores.open(file, keyIndex, lifetimeIndex), onExpiry);
 	}
 
 	public TimedIDManager(String path, Consumer<String[]> onExpiry, int keyIndex, int lifetimeIndex) {
@@ -29,38 +71,104 @@ public class TimedIDManager extends IDManager {
 	}
 
 	public void appendEntry(String[] entryArray) throws IOException {
-		super.appendEntry(entryArray);
-		startExpiryTimer(entryArray);
+		ReentrantLock keyLock = lockFor(entryArray[keyIndex].strip());
+		keyLock.lock();
+		try {
+			super.appendEntry(entryArray);
+			startExpiryTimer(entryArray);
+		} finally {
+			keyLock.unlock();
+		}
 	}
 
 	@Override
-	public void deleteEntry(String key) throws IOException {
-		super.deleteEntry(key);
-		cancelTimer(key);
+	public String[] readAndDeleteEntry(String key) throws IOException { // deleteEntry comes through here as well
+		ReentrantLock keyLock = lockFor(key);
+		keyLock.lock();
+		try {
+			String[] entryArray = super.readAndDeleteEntry(key);
+			cancelTimer(key);
+			return entryArray;
+		} finally {
+			keyLock.unlock();
+		}
+	}
+
+	public void startExpiryTimer(String[] entryArray) { // Re-arming a key replaces its previous timeout
+		String key = entryArray[keyIndex].strip();
+		long lifetimeMillis = lifetimeOf(entryArray); // Parsed once, the timeout carries the long
+		long delay = Math.max(0, lifetimeMillis - System.currentTimeMillis());
+
+		HashedTimingWheel.Timeout timeout = EXPIRY_WHEEL.schedule(expired -> handOff(key, lifetimeMillis, expired), delay, TimeUnit.MILLISECONDS);
+		HashedTimingWheel.Timeout previous = expiryTimeouts.put(key, timeout);
+		if(previous == null) {
+			ARMED_TIMEOUTS.increment();
+		} else {
+			previous.cancel();
+		}
+	}
+
+	// Settles the sessions left over from the last boot in one pass. Those that ran out while the bot was down are deleted
+	// with a single store write and timed out at a steady pace across every guild, so a long outage neither writes once
+	// per session nor sends all its edits at once. Returns the live sessions, whose timers the caller arms once it has
+	// done its own bookkeeping for them.
+	public List<String[]> reconcile() throws IOException {
+		long nowMillis = System.currentTimeMillis();
+		Map<Boolean, List<String[]>> byExpiry = stream().collect(Collectors.partitioningBy(entryArray -> lifetimeOf(entryArray) <= nowMillis)); // Order does not matter here
+		List<String[]> liveEntries = byExpiry.get(false);
+		List<String> expiredKeys = byExpiry.get(true).stream().map(entryArray -> entryArray[keyIndex].strip()).toList();
+		if(expiredKeys.isEmpty()) return liveEntries;
+
+		List<String[]> expiredEntries = store.deleteAllIf(expiredKeys, entryArray -> lifetimeOf(entryArray) <= nowMillis); // A session renewed since the scan stays
+		RECONCILED_EXPIRIES.add(expiredEntries.size());
+		EXPIRIES.add(expiredEntries.size());
+		long nowNanos = System.nanoTime();
+		for(String[] entryArray : expiredEntries) { // The executor still retries each edit that fails or is rate limited
+			long dueAt = NEXT_RECONCILED_EXPIRY.updateAndGet(previous -> Math.max(previous, nowNanos) + RECONCILED_EXPIRY_SPACING_NANOS);
+			EXPIRY_WHEEL.schedule(timeout -> EXPIRY_EXECUTOR.execute(() -> expirySequence.accept(entryArray)), dueAt - nowNanos, TimeUnit.NANOSECONDS);
+		}
+		return liveEntries;
+	}
+
+	private void handOff(String key, long lifetimeMillis, HashedTimingWheel.Timeout timeout) { // Runs on the wheel thread, so nothing here may block
+		if(!expiryTimeouts.remove(key, timeout)) return; // The key was re-armed or cancelled after this timeout fired
+		ARMED_TIMEOUTS.decrement();
+		EXPIRY_EXECUTOR.execute(() -> expire(key, lifetimeMillis));
+	}
+
+	private void expire(String key, long lifetimeMillis) throws IOException { // Stop the application session on timeout
+		// Only delete the entry this timeout was armed for, a newer session under the same key stays.
+		// A failed delete leaves the entry in place, so the retry simply tries again.
+		String[] entryArray = deleteIfExpiresAt(key, lifetimeMillis);
+		if(entryArray == null) return;
+
+		EXPIRIES.increment();
+		EXPIRY_LAG.record(TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis() - lifetimeMillis));
+		EXPIRY_EXECUTOR.execute(() -> expirySequence.accept(entryArray)); // Retried on its own, the entry must not be deleted twice
+	}
+
+	private String[] deleteIfExpiresAt(String key, long lifetimeMillis) throws IOException {
+		if(store instanceof SessionIDStore sessionStore) { // Typed sessions compare the long in place instead of building the row
+			SessionRecord session = sessionStore.deleteSessionIf(Long.parseLong(key), candidate -> candidate.expiryMillis() == lifetimeMillis);
+			return session == null ? null : session.toEntry();
+		}
+		return readAndDeleteEntryIf(key, entry -> lifetimeOf(entry) == lifetimeMillis);
+	}
+
+	private long lifetimeOf(String[] entryArray) {
+		return Long.parseLong(entryArray[lifetimeIndex].strip());
 	}
 
-	public void startExpiryTimer(String[] entryArray) {
-		String key = entryArray[keyIndex];
-
-		TimerTask onExpiry = new TimerTask() { // Stop the application session on timeout
-			@Override
-			public void run() {
-				String[] entryArray;
-				try {
-					entryArray = readAndDeleteEntry(key);
-				} catch(IOException e) {
-					throw new RuntimeException(e);
-				}
-				expirySequence.accept(entryArray);
-			}
-		};
-
-		expiryTimer.schedule(onExpiry, Math.max(0, Long.parseLong(entryArray[lifetimeIndex]) - System.currentTimeMillis()));
-		timerTasks.put(key, onExpiry);
+	private ReentrantLock lockFor(String key) {
+		return keyLocks[Math.floorMod(key.hashCode(), LOCK_STRIPES)];
 	}
 
 	private void cancelTimer(String key) {
-		timerTasks.get(key).cancel();
+		HashedTimingWheel.Timeout timeout = expiryTimeouts.remove(key);
+		if(timeout != null) {
+			ARMED_TIMEOUTS.decrement();
+			timeout.cancel();
+		}
 	}
 
 }
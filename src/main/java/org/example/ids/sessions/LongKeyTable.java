@@ -0,0 +1,109 @@
+package org.example.ids.sessions;
+
+import java.util.function.IntFunction;
+
+public abstract class LongKeyTable<A> {
+
+	// Open addressing over primitive long keys, shared by the maps that must not box them. Keys sit in one long array,
+	// probed linearly, and each subclass keeps its values in a parallel array A of whatever type suits it and decides
+	// which positions are free. Deletes shift later entries back instead of leaving tombstones, which keeps probe
+	// runs short. The value arrays come from a factory handed to the constructor rather than an overridable method,
+	// so building the first table never calls into a subclass that is not constructed yet. Not thread safe.
+
+	protected static final int NOT_FOUND = -1;
+	private static final int MIN_CAPACITY = 16;
+	private static final float MAX_LOAD = 0.6f;
+
+	private final IntFunction<A> newValues; // Every position of a new array is free
+	protected long[] keys;
+	protected A values;
+	private int size;
+	private int resizeAt;
+
+	protected LongKeyTable(int expectedSize, IntFunction<A> newValues) {
+		this.newValues = newValues;
+		int capacity = MIN_CAPACITY;
+		while(capacity * MAX_LOAD <= expectedSize) {
+			capacity <<= 1;
+		}
+		allocate(capacity);
+	}
+
+	public int size() { return size; }
+
+	protected abstract boolean isFree(A values, int position);
+
+	protected abstract void moveValue(A from, int fromPosition, A to, int toPosition);
+
+	protected abstract void freeValue(A values, int position);
+
+	protected final int find(long key) { // NOT_FOUND when absent
+		int mask = keys.length - 1;
+		for(int position = positionFor(key, mask); !isFree(values, position); position = (position + 1) & mask) {
+			if(keys[position] == key) return position;
+		}
+		return NOT_FOUND;
+	}
+
+	// Where the key is, or the free position it belongs in. A subclass filling a free one stores the key and its value, then calls added()
+	protected final int findOrFree(long key) {
+		int mask = keys.length - 1;
+		int position = positionFor(key, mask);
+		while(!isFree(values, position) && keys[position] != key) {
+			position = (position + 1) & mask;
+		}
+		return position;
+	}
+
+	protected final void added() {
+		if(++size >= resizeAt) rehash(keys.length * 2);
+	}
+
+	// Fills the freed position with the next entry in the run that may sit there, then repeats from that entry's old position
+	protected final void removeAt(int freedPosition) {
+		int mask = keys.length - 1;
+		int position = freedPosition;
+		while(true) {
+			position = (position + 1) & mask;
+			if(isFree(values, position)) break;
+			int homePosition = positionFor(keys[position], mask);
+			boolean reachable = freedPosition <= position ? (homePosition <= freedPosition || homePosition > position) : (homePosition <= freedPosition && homePosition > position);
+			if(reachable) {
+				keys[freedPosition] = keys[position];
+				moveValue(values, position, values, freedPosition);
+				freedPosition = position;
+			}
+		}
+		freeValue(values, freedPosition);
+		keys[freedPosition] = 0;
+		size--;
+	}
+
+	protected static int positionFor(long key, int mask) { // Snowflakes share their high bits, so mix everything down first
+		long hash = key * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ (hash >>> 32)) & mask;
+	}
+
+	private void rehash(int capacity) {
+		long[] oldKeys = keys;
+		A oldValues = values;
+		allocate(capacity);
+		int mask = capacity - 1;
+		for(int i = 0; i < oldKeys.length; i++) {
+			if(isFree(oldValues, i)) continue;
+			int position = positionFor(oldKeys[i], mask);
+			while(!isFree(values, position)) {
+				position = (position + 1) & mask;
+			}
+			keys[position] = oldKeys[i];
+			moveValue(oldValues, i, values, position);
+		}
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = newValues.apply(capacity);
+		resizeAt = (int) (capacity * MAX_LOAD);
+	}
+
+}
@@ -0,0 +1,78 @@
+package org.example.ids.sessions;
+
+public final class LongRecordMap<V> extends LongKeyTable<Object[]> {
+
+	// Map from primitive long keys to records, on LongKeyTable's open addressing with the records in a parallel array,
+	// so a lookup boxes nothing and touches two arrays instead of a chain of nodes.
+	// Not thread safe. Readers racing a writer may get a wrong answer but never an exception or an endless probe,
+	// which is what lets SessionIDStore read optimistically and only retry under its lock when the race happened.
+
+	private static final int DEFAULT_EXPECTED_SIZE = 16;
+
+	public LongRecordMap() {
+		this(DEFAULT_EXPECTED_SIZE);
+	}
+
+	public LongRecordMap(int expectedSize) {
+		super(expectedSize, Object[]::new); // A null value marks a free position, so every key including 0 is usable
+	}
+
+	@SuppressWarnings("unchecked")
+	public V get(long key) { // Probes on its own copies of the arrays rather than find(), for the racing readers above
+		long[] keys = this.keys;
+		Object[] values = this.values;
+		int mask = Math.min(keys.length, values.length) - 1; // The two can differ for a racing reader mid-rehash
+		int position = positionFor(key, mask);
+		for(int probes = 0; probes <= mask && values[position] != null; probes++) {
+			if(keys[position] == key) return (V) values[position];
+			position = (position + 1) & mask;
+		}
+		return null;
+	}
+
+	public boolean containsKey(long key) {
+		return get(key) != null;
+	}
+
+	@SuppressWarnings("unchecked")
+	public V put(long key, V value) { // Returns the record it replaced
+		if(value == null) throw new NullPointerException("LongRecordMap does not hold null records");
+		int position = findOrFree(key);
+		V previousValue = (V) values[position];
+		if(previousValue == null) keys[position] = key; // Before the record, so a racing reader never pairs it with another key
+		values[position] = value;
+		if(previousValue == null) added();
+		return previousValue;
+	}
+
+	@SuppressWarnings("unchecked")
+	public V remove(long key) {
+		int position = find(key);
+		if(position == NOT_FOUND) return null;
+		V previousValue = (V) values[position];
+		removeAt(position);
+		return previousValue;
+	}
+
+	@SuppressWarnings("unchecked")
+	public void forEach(EntryVisitor<? super V> visitor) {
+		for(int position = 0; position < keys.length; position++) {
+			if(values[position] != null) visitor.visit(keys[position], (V) values[position]);
+		}
+	}
+
+	@Override
+	protected boolean isFree(Object[] values, int position) { return values[position] == null; }
+
+	@Override
+	protected void moveValue(Object[] from, int fromPosition, Object[] to, int toPosition) { to[toPosition] = from[fromPosition]; }
+
+	@Override
+	protected void freeValue(Object[] values, int position) { values[position] = null; }
+
+	@FunctionalInterface
+	public interface EntryVisitor<V> {
+		void visit(long key, V value);
+	}
+
+}
@@ -0,0 +1,57 @@
+package org.example.ids.sessions;
+
+import java.util.Arrays;
+import java.util.List;
+
+// One row of sessionIDs.txt: the DM channel, the application message in it, when the session expires, the user it
+// belongs to and the links collected so far. Everything but the links is a snowflake or epoch millis, so it is kept as
+// a long. Rows written before the user was stored have their links straight after the expiry; they read with NO_USER
+// and are written back the same way, so a row never changes shape under a store.
+public record SessionRecord(long channelId, long messageId, long expiryMillis, long userId, List<String> videoLinks) {
+
+	public static final int CHANNEL_INDEX = 0;
+	public static final int MESSAGE_INDEX = 1;
+	public static final int EXPIRY_INDEX = 2;
+	public static final int USER_INDEX = 3;
+	public static final int LINKS_INDEX = 4;
+	public static final long NO_USER = 0;
+
+	public static SessionRecord fromEntry(String[] entryData) {
+		boolean hasUser = entryData.length > USER_INDEX && isSnowflake(entryData[USER_INDEX]); // Links are never bare numbers
+		int linksIndex = hasUser ? LINKS_INDEX : USER_INDEX;
+		return new SessionRecord(
+				Long.parseLong(entryData[CHANNEL_INDEX].strip()),
+				Long.parseLong(entryData[MESSAGE_INDEX].strip()),
+				Long.parseLong(entryData[EXPIRY_INDEX].strip()),
+				hasUser ? Long.parseLong(entryData[USER_INDEX].strip()) : NO_USER,
+				entryData.length > linksIndex ? List.of(Arrays.copyOfRange(entryData, linksIndex, entryData.length)) : List.of()
+		);
+	}
+
+	public String[] toEntry() { // The row as the id files and the String based stores hold it
+		int linksIndex = userId == NO_USER ? USER_INDEX : LINKS_INDEX;
+		String[] entryData = new String[linksIndex + videoLinks.size()];
+		entryData[CHANNEL_INDEX] = String.valueOf(channelId);
+		entryData[MESSAGE_INDEX] = String.valueOf(messageId);
+		entryData[EXPIRY_INDEX] = String.valueOf(expiryMillis);
+		if(userId != NO_USER) entryData[USER_INDEX] = String.valueOf(userId);
+		for(int i = 0; i < videoLinks.size(); i++) {
+			entryData[linksIndex + i] = videoLinks.get(i);
+		}
+		return entryData;
+	}
+
+	public SessionRecord withVideoLinks(List<String> videoLinks) {
+		return new SessionRecord(channelId, messageId, expiryMillis, userId, List.copyOf(videoLinks));
+	}
+
+	private static boolean isSnowflake(String column) {
+		String value = column.strip();
+		if(value.isEmpty()) return false;
+		for(int i = 0; i < value.length(); i++) {
+			if(!Character.isDigit(value.charAt(i))) return false;
+		}
+		return true;
+	}
+
+}
@@ -0,0 +1,201 @@
+package org.example.ids.stores;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+public final class FlatFileIDStore implements IDStore {
+
+	// The original id file format: a comma separated text file, read once into an in-memory index, with every change
+	// written to a journal beside it and folded back into the file by compaction.
+
+	private static final int LOCK_STRIPES = 64; // Writers to different keys rarely share a stripe, so they never wait on each other
+
+	private final int keyIndex;
+	private final int expiryIndex;
+	private final ConcurrentHashMap<String, IndexedEntry> index; // Every entry in the file, keyed on keyIndex. Reads take no lock
+	private final ConcurrentSkipListSet<ExpiryKey> expiryOrder; // Empty unless the store has an expiry column
+	private final ReentrantLock[] keyLocks; // Locks rather than monitors, so a virtual thread waiting on the journal never pins its carrier
+	private final AtomicLong insertionCounter; // Keeps scans in file order, which the map itself does not
+	private final IDJournal journal;
+
+	public FlatFileIDStore(File file, int keyIndex, int expiryIndex) {
+		this.keyIndex = keyIndex;
+		this.expiryIndex = expiryIndex;
+		index = new ConcurrentHashMap<>();
+		expiryOrder = new ConcurrentSkipListSet<>();
+		insertionCounter = new AtomicLong();
+		keyLocks = new ReentrantLock[LOCK_STRIPES];
+		for(int i = 0; i < LOCK_STRIPES; i++) {
+			keyLocks[i] = new ReentrantLock();
+		}
+
+		try { // The file is only read once, every operation after this is answered from the index
+			journal = new IDJournal(file, this::scan, index::size);
+			journal.load(
+					this::indexEntry, // Later duplicates replace earlier ones in place, matching the last append
+					this::unindexEntry
+			);
+		} catch(IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public int getKeyIndex() { return keyIndex; }
+
+	@Override
+	public int getExpiryIndex() { return expiryIndex; }
+
+	@Override
+	public String[] getLabels() { return journal.getLabels(); }
+
+	@Override
+	public String[] get(String key) {
+		IndexedEntry entry = index.get(key);
+		return entry == null ? null : entry.data();
+	}
+
+	@Override
+	public void put(String[] entryData) throws IOException {
+		journal.write(lockFor(entryData[keyIndex].strip()), () -> {
+			indexEntry(entryData);
+			return journal.enqueueAppend(entryData);
+		});
+	}
+
+	@Override
+	public String[] update(String key, UnaryOperator<String[]> update) throws IOException {
+		String[][] updatedEntry = new String[1][];
+		journal.write(lockFor(key), () -> {
+			IndexedEntry targetEntry = index.get(key);
+			if(targetEntry == null) return IDJournal.NOTHING_QUEUED;
+			updatedEntry[0] = update.apply(targetEntry.data());
+			if(updatedEntry[0] == targetEntry.data()) return IDJournal.NOTHING_QUEUED;
+			replaceEntry(key, targetEntry, new IndexedEntry(targetEntry.order(), updatedEntry[0])); // Keeps its place in the file
+			return journal.enqueueAppend(updatedEntry[0]);
+		});
+		return updatedEntry[0];
+	}
+
+	@Override
+	public String[] deleteIf(String key, Predicate<String[]> condition) throws IOException {
+		String[][] deletedEntry = new String[1][];
+		journal.write(lockFor(key), () -> deleteLocked(key, condition, deletedEntry));
+		return deletedEntry[0];
+	}
+
+	@Override
+	public List<String[]> deleteAllIf(Collection<String> keys, Predicate<String[]> condition) throws IOException {
+		ArrayList<String[]> deletedEntries = new ArrayList<>();
+		String[][] deletedEntry = new String[1][];
+		long sequence = IDJournal.NOTHING_QUEUED;
+		for(String key : keys) {
+			deletedEntry[0] = null;
+			sequence = Math.max(sequence, journal.queue(lockFor(key), () -> deleteLocked(key, condition, deletedEntry)));
+			if(deletedEntry[0] != null) deletedEntries.add(deletedEntry[0]);
+		}
+		journal.sync(sequence); // Every record queued before the last one goes out in the same flush
+		return deletedEntries;
+	}
+
+	private long deleteLocked(String key, Predicate<String[]> condition, String[][] deletedEntry) { // Caller holds the key's lock
+		IndexedEntry targetEntry = index.get(key);
+		if(targetEntry == null || !condition.test(targetEntry.data())) return IDJournal.NOTHING_QUEUED; // Nothing to tombstone
+		unindexEntry(key);
+		deletedEntry[0] = targetEntry.data();
+		return journal.enqueueDelete(key);
+	}
+
+	@Override
+	public void scan(Consumer<String[]> visitor) {
+		for(IndexedEntry entry : orderedEntries()) {
+			visitor.accept(entry.data());
+		}
+	}
+
+	@Override
+	public void scanExpiring(long untilMillis, Consumer<String[]> visitor) {
+		for(ExpiryKey expiryKey : expiryOrder.headSet(new ExpiryKey(untilMillis, null), true)) {
+			IndexedEntry entry = index.get(expiryKey.key());
+			if(entry != null && expiryOf(entry.data()) == expiryKey.expiryMillis()) visitor.accept(entry.data()); // Skips entries changed mid-scan
+		}
+	}
+
+	@Override
+	public Stream<String[]> stream() {
+		return index.values().stream().map(IndexedEntry::data);
+	}
+
+	@Override
+	public Stream<String[]> orderedStream() { // Sorts the index entries, the rows themselves are not copied
+		return orderedEntries().stream().map(IndexedEntry::data);
+	}
+
+	@Override
+	public int size() { return index.size(); }
+
+	@Override
+	public void close() throws IOException {
+		journal.close();
+	}
+
+	private List<IndexedEntry> orderedEntries() {
+		ArrayList<IndexedEntry> entries = new ArrayList<>(index.values());
+		entries.sort(Comparator.comparingLong(IndexedEntry::order));
+		return entries;
+	}
+
+	private void indexEntry(String[] entryData) { // A replaced entry keeps its place, so replaying an update leaves the order alone
+		String key = entryData[keyIndex].strip();
+		IndexedEntry previousEntry = index.get(key);
+		long order = previousEntry == null ? insertionCounter.getAndIncrement() : previousEntry.order();
+		replaceEntry(key, previousEntry, new IndexedEntry(order, entryData));
+	}
+
+	private void replaceEntry(String key, IndexedEntry previousEntry, IndexedEntry entry) { // Caller holds the key's lock, or is loading
+		index.put(key, entry);
+		if(expiryIndex == NO_EXPIRY) return;
+		if(previousEntry != null) expiryOrder.remove(new ExpiryKey(expiryOf(previousEntry.data()), key));
+		expiryOrder.add(new ExpiryKey(expiryOf(entry.data()), key));
+	}
+
+	private void unindexEntry(String key) {
+		IndexedEntry previousEntry = index.remove(key);
+		if(previousEntry != null && expiryIndex != NO_EXPIRY) expiryOrder.remove(new ExpiryKey(expiryOf(previousEntry.data()), key));
+	}
+
+	private long expiryOf(String[] entryData) {
+		return Long.parseLong(entryData[expiryIndex].strip()); // Hand edited rows may carry extra padding
+	}
+
+	private ReentrantLock lockFor(String key) {
+		return keyLocks[Math.floorMod(key.hashCode(), LOCK_STRIPES)];
+	}
+
+	private record IndexedEntry(long order, String[] data) {}
+
+	private record ExpiryKey(long expiryMillis, String key) implements Comparable<ExpiryKey> {
+
+		@Override
+		public int compareTo(ExpiryKey other) { // A null key sorts after every key with the same expiry, for range bounds
+			int byExpiry = Long.compare(expiryMillis, other.expiryMillis);
+			if(byExpiry != 0) return byExpiry;
+			if(key == null || other.key == null) return key == other.key ? 0 : key == null ? 1 : -1;
+			return key.compareTo(other.key);
+		}
+
+	}
+
+}
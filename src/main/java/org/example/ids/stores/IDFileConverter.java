@@ -0,0 +1,31 @@
+package org.example.ids.stores;
+
+import java.io.File;
+import java.io.IOException;
+
+public final class IDFileConverter {
+
+	// Converts a text id file into the binary format MappedIDStore reads, so a deployment can move a store over ahead
+	// of switching -Doverture.store to mapped instead of paying for the import on first boot.
+	// Usage: IDFileConverter <id file> <key index> [expiry index]
+
+	private IDFileConverter() {}
+
+	public static void main(String[] args) throws IOException {
+		if(args.length < 2) {
+			System.err.println("Usage: IDFileConverter <id file> <key index> [expiry index]");
+			System.exit(1);
+		}
+		File idFile = new File(args[0]);
+		int keyIndex = Integer.parseInt(args[1]);
+		int expiryIndex = args.length > 2 ? Integer.parseInt(args[2]) : IDStore.NO_EXPIRY;
+		File storeFile = new File(idFile.getPath() + MappedIDStore.FILE_SUFFIX);
+
+		long startNanos = System.nanoTime();
+		MappedIDStore.convert(idFile, storeFile, keyIndex, expiryIndex);
+		try(MappedIDStore store = new MappedIDStore(storeFile, keyIndex, expiryIndex, null)) {
+			System.out.printf("Converted %d entries into %s in %d ms%n", store.size(), storeFile, (System.nanoTime() - startNanos) / 1_000_000);
+		}
+	}
+
+}
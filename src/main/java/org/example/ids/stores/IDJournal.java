@@ -0,0 +1,269 @@
+package org.example.ids.stores;
+
+import org.example.metrics.LatencyHistogram;
+import org.example.metrics.Metrics;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.concurrent.locks.Lock;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+
+class IDJournal {
+
+	// Append-only log sitting next to an id file. Appends and deletes are written here as single records so a write
+	// costs the size of the change, while the id file itself is only replaced wholesale by compaction. The stores that
+	// keep an id file in memory load it through here too, so the file's format lives in one place.
+
+	static final long NOTHING_QUEUED = 0; // Sequences start at one
+
+	private static final String APPEND_PREFIX = "+ ";
+	private static final String DELETE_PREFIX = "- ";
+	private static final int COMPACTION_THRESHOLD = 512; // Least records in the journal before the id file is rewritten
+	private static final LatencyHistogram SYNC_LATENCY = Metrics.histogram("overture_store_sync_seconds", "Time writers wait for their journal record to be on disk");
+	private static final LatencyHistogram FLUSH_LATENCY = Metrics.histogram("overture_store_flush_seconds", "Time taken to write and fsync one group commit");
+	private static final LatencyHistogram COMPACTION_LATENCY = Metrics.histogram("overture_store_compaction_seconds", "Time taken to compact a journal into its id file");
+	private static final ExecutorService COMPACTOR = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "id-journal-compactor");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final File idFile;
+	private final Path journalPath;
+	private final Consumer<Consumer<String[]>> scan; // Visits the store's entries in insertion order, for compaction
+	private final IntSupplier entryCount;
+	private FileChannel channel; // Guarded by flushLock, replaced when compaction swaps in a new journal
+	private final Object flushLock = new Object();
+	private ArrayList<String> pendingRecords = new ArrayList<>();
+	private long enqueuedSequence; // Guarded by this
+	private long durableSequence; // Guarded by flushLock
+	private int journalledRecords; // Guarded by flushLock
+	private boolean compactionQueued; // Guarded by flushLock
+	private boolean closed; // Guarded by flushLock
+	private String[] labels; // Read once by load, before compaction can run
+
+	IDJournal(File idFile, Consumer<Consumer<String[]>> scan, IntSupplier entryCount) throws IOException {
+		this.idFile = idFile;
+		this.journalPath = Path.of(idFile.getPath() + ".journal");
+		this.scan = scan;
+		this.entryCount = entryCount;
+		channel = openJournal();
+	}
+
+	// Hands every entry of the id file to the store, then replays the journal over them. Later duplicates in the file
+	// replace earlier ones, matching the last append.
+	void load(Consumer<String[]> onAppend, Consumer<String> onDelete) throws IOException {
+		try(BufferedReader reader = new BufferedReader(new FileReader(idFile))) {
+			String line = reader.readLine();
+			if(line != null) labels = line.split(", "); // The first line of every id file holds the column labels
+			while((line = reader.readLine()) != null) {
+				if(line.isBlank()) continue;
+				onAppend.accept(line.split(", "));
+			}
+		}
+		replay(onAppend, onDelete);
+	}
+
+	String[] getLabels() { return labels; }
+
+	// Makes a change and queues its record under the same lock, so the journal keeps its order per key, then waits
+	// outside the lock so other writers can join the same fsync. The change returns its record's sequence.
+	void write(Lock lock, LongSupplier change) throws IOException {
+		sync(queue(lock, change));
+	}
+
+	long queue(Lock lock, LongSupplier change) { // For batches, which wait once for their last record
+		lock.lock();
+		try {
+			return change.getAsLong();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	// Replays every complete record over the entries already loaded from the id file. A record torn by a crash is cut
+	// off the end of the journal first, otherwise the next append would be written straight onto it.
+	private void replay(Consumer<String[]> onAppend, Consumer<String> onDelete) throws IOException {
+		byte[] contents = Files.readAllBytes(journalPath);
+		int completeBytes = contents.length;
+		while(completeBytes > 0 && contents[completeBytes - 1] != '\n') { // A newline byte is never part of a longer character
+			completeBytes--;
+		}
+		if(completeBytes < contents.length) {
+			synchronized(flushLock) {
+				channel.truncate(completeBytes);
+				channel.force(false);
+				channel.position(completeBytes);
+			}
+		}
+		if(completeBytes == 0) return;
+
+		String[] records = new String(contents, 0, completeBytes, StandardCharsets.UTF_8).split("\n");
+		for(String record : records) {
+			if(record.startsWith(APPEND_PREFIX)) {
+				onAppend.accept(record.substring(APPEND_PREFIX.length()).split(", "));
+			} else if(record.startsWith(DELETE_PREFIX)) {
+				onDelete.accept(record.substring(DELETE_PREFIX.length()));
+			}
+			journalledRecords++;
+		}
+		requestCompaction(); // Fold the previous run's journal into the id file
+	}
+
+	long enqueueAppend(String[] entryData) {
+		return enqueue(APPEND_PREFIX + String.join(", ", entryData));
+	}
+
+	long enqueueDelete(String key) {
+		return enqueue(DELETE_PREFIX + key);
+	}
+
+	// Blocks until the record with the given sequence is on disk. Whoever gets the flush lock first writes and fsyncs
+	// every record queued so far, so writers arriving together share a single fsync.
+	void sync(long sequence) throws IOException {
+		if(sequence == NOTHING_QUEUED) return;
+		long startTime = System.nanoTime();
+		synchronized(flushLock) {
+			if(durableSequence < sequence) flushPending(); // Otherwise another writer's flush already covered this record
+		}
+		SYNC_LATENCY.recordSince(startTime);
+	}
+
+	void close() throws IOException { // Anything still queued is written first
+		synchronized(flushLock) {
+			flushPending();
+			channel.close();
+			closed = true;
+		}
+	}
+
+	private synchronized long enqueue(String record) {
+		pendingRecords.add(record);
+		return ++enqueuedSequence;
+	}
+
+	private void flushPending() throws IOException { // Caller holds flushLock
+		List<String> batch;
+		long batchSequence;
+		synchronized(this) {
+			batch = pendingRecords;
+			batchSequence = enqueuedSequence;
+			pendingRecords = new ArrayList<>();
+		}
+		if(batch.isEmpty()) return;
+
+		long startTime = System.nanoTime();
+		StringBuilder stringBuilder = new StringBuilder();
+		for(String record : batch) {
+			stringBuilder.append(record).append("\n");
+		}
+		ByteBuffer buffer = ByteBuffer.wrap(stringBuilder.toString().getBytes(StandardCharsets.UTF_8));
+		while(buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		channel.force(false);
+		FLUSH_LATENCY.recordSince(startTime);
+
+		durableSequence = batchSequence;
+		journalledRecords += batch.size();
+		if(journalledRecords >= Math.max(COMPACTION_THRESHOLD, entryCount.getAsInt())) requestCompaction(); // Rewrites stay amortized O(1) per record
+	}
+
+	private void requestCompaction() {
+		synchronized(flushLock) {
+			if(compactionQueued) return;
+			compactionQueued = true;
+		}
+		COMPACTOR.execute(() -> {
+			try {
+				compact();
+			} catch(IOException e) {
+				e.printStackTrace();
+			}
+		});
+	}
+
+	// Writes the current entries to a temporary file and renames it over the id file, then drops the journal records
+	// the snapshot already covers. The slow snapshot write happens without the flush lock so writers are not held up.
+	// Replaying the full journal over any newer snapshot gives the same entries, so a crash between renames is safe.
+	private void compact() throws IOException {
+		long startTime = System.nanoTime();
+		long coveredBytes;
+		synchronized(flushLock) {
+			compactionQueued = false;
+			if(closed) return;
+			flushPending();
+			coveredBytes = channel.size(); // Every record up to here is already applied to the index
+		}
+
+		File tempFile = new File(idFile.getPath() + ".tmp");
+		try(BufferedWriter writer = new BufferedWriter(new FileWriter(tempFile))) {
+			for(String line : snapshotLines()) {
+				writer.append(line).append("\n");
+			}
+		}
+		forceFile(tempFile.toPath());
+
+		synchronized(flushLock) {
+			if(closed) { // The store was closed while the snapshot was written, the id file and journal stay as they are
+				Files.deleteIfExists(tempFile.toPath()); // Gone already if the files were cleaned up after closing
+				return;
+			}
+			flushPending();
+			Files.move(tempFile.toPath(), idFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+			ByteBuffer tail = ByteBuffer.allocate((int) (channel.size() - coveredBytes)); // Records written while the snapshot was taken
+			while(tail.hasRemaining()) {
+				channel.read(tail, coveredBytes + tail.position());
+			}
+			tail.flip();
+			String tailRecords = StandardCharsets.UTF_8.decode(tail.duplicate()).toString();
+
+			Path tempJournal = Path.of(journalPath + ".tmp");
+			Files.write(tempJournal, tail.array(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+			forceFile(tempJournal);
+			channel.close();
+			Files.move(tempJournal, journalPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			channel = openJournal();
+			journalledRecords = (int) tailRecords.chars().filter(c -> c == '\n').count();
+		}
+		COMPACTION_LATENCY.recordSince(startTime);
+	}
+
+	private List<String> snapshotLines() { // The id file contents that compaction writes
+		ArrayList<String> lines = new ArrayList<>();
+		if(labels != null) lines.add(String.join(", ", labels));
+		scan.accept(entryData -> lines.add(String.join(", ", entryData)));
+		return lines;
+	}
+
+	private FileChannel openJournal() throws IOException {
+		FileChannel journalChannel = FileChannel.open(journalPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		journalChannel.position(journalChannel.size()); // Only ever written at the end, under the flush lock
+		return journalChannel;
+	}
+
+	private static void forceFile(Path path) throws IOException {
+		try(FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+			fileChannel.force(true);
+		}
+	}
+
+}
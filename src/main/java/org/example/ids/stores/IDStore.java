@@ -0,0 +1,73 @@
+package org.example.ids.stores;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+public interface IDStore extends Closeable {
+
+	// Storage behind an IDManager. Entries are rows of strings keyed on one column, as in the id files, and an optional
+	// column of epoch millis is indexed so entries due to expire can be found without looking at the rest.
+	// Every operation is atomic for its key and safe to call from any thread.
+
+	int NO_EXPIRY = -1;
+
+	int getKeyIndex();
+
+	int getExpiryIndex();
+
+	String[] getLabels(); // Null when the store has no labels
+
+	String[] get(String key);
+
+	default boolean contains(String key) {
+		return get(key) != null;
+	}
+
+	void put(String[] entryData) throws IOException; // Replaces any entry under the same key, which keeps its place
+
+	// Returns the stored entry, or null if the key is absent. Returning the same array from the update writes nothing.
+	String[] update(String key, UnaryOperator<String[]> update) throws IOException;
+
+	String[] deleteIf(String key, Predicate<String[]> condition) throws IOException; // Returns the deleted entry
+
+	default String[] delete(String key) throws IOException {
+		return deleteIf(key, entryData -> true);
+	}
+
+	// Deletes every listed key the condition holds for, and returns what was deleted. Stores that write through a
+	// journal or a commit override this so the whole batch costs one write instead of one per key.
+	default List<String[]> deleteAllIf(Collection<String> keys, Predicate<String[]> condition) throws IOException {
+		ArrayList<String[]> deletedEntries = new ArrayList<>();
+		for(String key : keys) {
+			String[] entryData = deleteIf(key, condition);
+			if(entryData != null) deletedEntries.add(entryData);
+		}
+		return deletedEntries;
+	}
+
+	void scan(Consumer<String[]> visitor); // In insertion order
+
+	void scanExpiring(long untilMillis, Consumer<String[]> visitor); // Entries expiring at or before the given time, soonest first
+
+	// Every entry, in no set order, read only as the stream is consumed so a caller that stops early never touches the
+	// rest. Writes made while the stream is open may or may not show up. Parallel streams split the store between threads.
+	Stream<String[]> stream();
+
+	// Every entry in insertion order, as scan visits them. Ordering needs the whole store in hand first, so by default
+	// this is scan collected into a list, and stores that keep entries in insertion order override it to read lazily.
+	default Stream<String[]> orderedStream() {
+		ArrayList<String[]> entries = new ArrayList<>(size());
+		scan(entries::add);
+		return entries.stream();
+	}
+
+	int size();
+
+}
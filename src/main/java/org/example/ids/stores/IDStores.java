@@ -0,0 +1,36 @@
+package org.example.ids.stores;
+
+import org.example.ids.sessions.SessionRecord;
+
+import java.io.File;
+
+public final class IDStores {
+
+	// Picks the backend for every id store from -Doverture.store, so a deployment can switch without code changes
+
+	public static final String BACKEND_PROPERTY = "overture.store";
+	public static final String FLAT_FILE = "flat";
+	public static final String MVSTORE = "mvstore";
+	public static final String MAPPED = "mapped";
+
+	private IDStores() {}
+
+	public static IDStore open(File idFile, int keyIndex, int expiryIndex) {
+		String backend = System.getProperty(BACKEND_PROPERTY, FLAT_FILE);
+		return switch(backend) {
+			case FLAT_FILE -> new FlatFileIDStore(idFile, keyIndex, expiryIndex);
+			case MVSTORE -> MVStoreIDStore.open(idFile, keyIndex, expiryIndex);
+			case MAPPED -> MappedIDStore.open(idFile, keyIndex, expiryIndex);
+			default -> throw new IllegalArgumentException("Unknown id store backend: " + backend);
+		};
+	}
+
+	// Session files have a fixed layout, which the flat file backend can type. Their video links are free text,
+	// which the fixed width mapped slots cannot hold, so the mapped backend keeps sessions typed as well.
+	public static IDStore openSessions(File idFile) {
+		String backend = System.getProperty(BACKEND_PROPERTY, FLAT_FILE);
+		if(backend.equals(FLAT_FILE) || backend.equals(MAPPED)) return new SessionIDStore(idFile);
+		return open(idFile, SessionRecord.CHANNEL_INDEX, SessionRecord.EXPIRY_INDEX);
+	}
+
+}
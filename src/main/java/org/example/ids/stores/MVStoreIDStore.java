@@ -0,0 +1,267 @@
+package org.example.ids.stores;
+
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.MVStore;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+public class MVStoreIDStore implements IDStore {
+
+	// Embedded transactional backend on H2's MVStore. Entries sit in a B-tree keyed on the key column, beside two more
+	// trees: insertion order, for scans, and expiry time, for finding due entries. All three change together under the
+	// key's lock and go out in the same commit, so a crash never leaves an index ahead of the entries. Nothing is held in
+	// memory beyond MVStore's page cache, which is what keeps large session tables cheap to open and to hold.
+	// A commit reaches the OS before the call returns, but is not fsynced the way the flat file's journal is.
+
+	private static final int LOCK_STRIPES = 64;
+	private static final String FIELD_SEPARATOR = ", "; // Rows are kept exactly as they appear in the id files
+	private static final String LABELS_KEY = "labels";
+
+	private final MVStore store;
+	private final int keyIndex;
+	private final int expiryIndex;
+	private final MVMap<String, String> entries; // Key to row
+	private final MVMap<String, Long> entryOrders; // Key to its place in insertion order
+	private final MVMap<Long, String> insertionOrder; // Place to key
+	private final MVMap<String, String> expiryOrder; // Zero padded expiry and key, so keys sort by time, to key
+	private final MVMap<String, String> meta;
+	private final Object[] keyLocks;
+	private final ReentrantReadWriteLock commitLock; // Writers share it, commits take it alone so none catches a write half done
+	private final AtomicLong insertionCounter;
+
+	public MVStoreIDStore(File storeFile, int keyIndex, int expiryIndex) {
+		this.keyIndex = keyIndex;
+		this.expiryIndex = expiryIndex;
+		store = new MVStore.Builder()
+				.fileName(storeFile.getPath())
+				.autoCommitDisabled() // Every write commits itself
+				.open();
+		entries = store.openMap("entries");
+		entryOrders = store.openMap("entryOrders");
+		insertionOrder = store.openMap("insertionOrder");
+		expiryOrder = store.openMap("expiryOrder");
+		meta = store.openMap("meta");
+
+		Long lastOrder = insertionOrder.lastKey();
+		insertionCounter = new AtomicLong(lastOrder == null ? 0 : lastOrder + 1);
+		keyLocks = new Object[LOCK_STRIPES];
+		for(int i = 0; i < LOCK_STRIPES; i++) {
+			keyLocks[i] = new Object();
+		}
+		commitLock = new ReentrantReadWriteLock();
+	}
+
+	// Opens the store kept beside an id file, importing the id file the first time so switching backends loses nothing
+	public static MVStoreIDStore open(File idFile, int keyIndex, int expiryIndex) {
+		File storeFile = new File(idFile.getPath() + ".mv");
+		boolean created = !storeFile.exists();
+		MVStoreIDStore mvStore = new MVStoreIDStore(storeFile, keyIndex, expiryIndex);
+		if(created && idFile.exists()) {
+			try(FlatFileIDStore flatFileStore = new FlatFileIDStore(idFile, keyIndex, expiryIndex)) {
+				mvStore.importFrom(flatFileStore);
+			} catch(IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+		return mvStore;
+	}
+
+	public void importFrom(IDStore source) { // One commit for the whole import
+		if(source.getLabels() != null) meta.put(LABELS_KEY, String.join(FIELD_SEPARATOR, source.getLabels()));
+		source.scan(entryData -> {
+			String key = entryData[keyIndex].strip();
+			commitLock.readLock().lock();
+			try {
+				synchronized(lockFor(key)) {
+					write(key, entries.get(key), entryData);
+				}
+			} finally {
+				commitLock.readLock().unlock();
+			}
+		});
+		commit();
+	}
+
+	@Override
+	public int getKeyIndex() { return keyIndex; }
+
+	@Override
+	public int getExpiryIndex() { return expiryIndex; }
+
+	@Override
+	public String[] getLabels() {
+		String labels = meta.get(LABELS_KEY);
+		return labels == null ? null : labels.split(FIELD_SEPARATOR);
+	}
+
+	@Override
+	public String[] get(String key) {
+		String row = entries.get(key);
+		return row == null ? null : row.split(FIELD_SEPARATOR);
+	}
+
+	@Override
+	public void put(String[] entryData) {
+		String key = entryData[keyIndex].strip();
+		commitLock.readLock().lock();
+		try {
+			synchronized(lockFor(key)) {
+				write(key, entries.get(key), entryData);
+			}
+		} finally {
+			commitLock.readLock().unlock();
+		}
+		commit(); // Outside the stripe, a commit covers whatever other writers have finished by then
+	}
+
+	@Override
+	public String[] update(String key, UnaryOperator<String[]> update) {
+		String[] updatedEntry;
+		commitLock.readLock().lock();
+		try {
+			synchronized(lockFor(key)) {
+				String row = entries.get(key);
+				if(row == null) return null;
+				String[] entryData = row.split(FIELD_SEPARATOR);
+				updatedEntry = update.apply(entryData);
+				if(updatedEntry == entryData) return updatedEntry;
+				write(key, row, updatedEntry);
+			}
+		} finally {
+			commitLock.readLock().unlock();
+		}
+		commit();
+		return updatedEntry;
+	}
+
+	@Override
+	public String[] deleteIf(String key, Predicate<String[]> condition) {
+		String[] entryData;
+		commitLock.readLock().lock();
+		try {
+			synchronized(lockFor(key)) {
+				String row = entries.get(key);
+				if(row == null) return null;
+				entryData = row.split(FIELD_SEPARATOR);
+				if(!condition.test(entryData)) return null;
+
+				entries.remove(key);
+				insertionOrder.remove(entryOrders.remove(key));
+				if(expiryIndex != NO_EXPIRY) expiryOrder.remove(expiryKey(entryData[expiryIndex], key));
+			}
+		} finally {
+			commitLock.readLock().unlock();
+		}
+		commit();
+		return entryData;
+	}
+
+	@Override
+	public List<String[]> deleteAllIf(Collection<String> keys, Predicate<String[]> condition) {
+		ArrayList<String[]> deletedEntries = new ArrayList<>();
+		commitLock.readLock().lock();
+		try {
+			for(String key : keys) {
+				synchronized(lockFor(key)) {
+					String row = entries.get(key);
+					if(row == null) continue;
+					String[] entryData = row.split(FIELD_SEPARATOR);
+					if(!condition.test(entryData)) continue;
+
+					entries.remove(key);
+					insertionOrder.remove(entryOrders.remove(key));
+					if(expiryIndex != NO_EXPIRY) expiryOrder.remove(expiryKey(entryData[expiryIndex], key));
+					deletedEntries.add(entryData);
+				}
+			}
+		} finally {
+			commitLock.readLock().unlock();
+		}
+		commit(); // One commit for the whole batch
+		return deletedEntries;
+	}
+
+	@Override
+	public void scan(Consumer<String[]> visitor) {
+		for(String key : insertionOrder.values()) {
+			String row = entries.get(key);
+			if(row != null) visitor.accept(row.split(FIELD_SEPARATOR)); // Null when deleted mid-scan
+		}
+	}
+
+	@Override
+	public Stream<String[]> stream() { // Walks the entry tree's pages as it goes
+		return entries.values().stream().map(row -> row.split(FIELD_SEPARATOR));
+	}
+
+	@Override
+	public Stream<String[]> orderedStream() { // Walks the insertion order tree the way scan does, a page at a time
+		return insertionOrder.values().stream()
+				.map(entries::get)
+				.filter(Objects::nonNull) // Deleted mid-stream
+				.map(row -> row.split(FIELD_SEPARATOR));
+	}
+
+	@Override
+	public void scanExpiring(long untilMillis, Consumer<String[]> visitor) {
+		String lastKey = expiryKey(String.valueOf(untilMillis), "\uffff"); // Sorts after every key with that expiry
+		Iterator<String> expiryKeys = expiryOrder.keyIterator(null);
+		while(expiryKeys.hasNext()) {
+			String expiryKey = expiryKeys.next();
+			if(expiryKey.compareTo(lastKey) > 0) break;
+			String row = entries.get(expiryOrder.get(expiryKey));
+			if(row != null) visitor.accept(row.split(FIELD_SEPARATOR));
+		}
+	}
+
+	@Override
+	public int size() { return entries.size(); }
+
+	@Override
+	public void close() {
+		store.close();
+	}
+
+	private void commit() {
+		commitLock.writeLock().lock();
+		try {
+			store.commit();
+		} finally {
+			commitLock.writeLock().unlock();
+		}
+	}
+
+	private void write(String key, String previousRow, String[] entryData) { // Caller holds the key's lock
+		if(previousRow == null) { // A replaced entry keeps its place in insertion order
+			long order = insertionCounter.getAndIncrement();
+			entryOrders.put(key, order);
+			insertionOrder.put(order, key);
+		}
+		entries.put(key, String.join(FIELD_SEPARATOR, entryData));
+
+		if(expiryIndex == NO_EXPIRY) return;
+		if(previousRow != null) expiryOrder.remove(expiryKey(previousRow.split(FIELD_SEPARATOR)[expiryIndex], key));
+		expiryOrder.put(expiryKey(entryData[expiryIndex], key), key);
+	}
+
+	private static String expiryKey(String expiryMillis, String key) {
+		return String.format("%019d:%s", Long.parseLong(expiryMillis.strip()), key);
+	}
+
+	private Object lockFor(String key) {
+		return keyLocks[Math.floorMod(key.hashCode(), LOCK_STRIPES)];
+	}
+
+}
@@ -0,0 +1,444 @@
+package org.example.ids.stores;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Spliterator;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.CRC32C;
+
+public class MappedIDStore implements IDStore {
+
+	// Binary id store: one header page, then fixed width slots of longs in a memory mapped file. A write only touches
+	// the slot it changes, a delete tombstones its slot in place and freed slots are handed out again, so the file is
+	// never rewritten. Opening walks the slots straight out of the mapping without parsing any text.
+	// Slots only hold longs, which suits stores whose columns are all snowflakes and millis, like roleIDs.txt.
+	//
+	// Header: magic, version, columns, key index, expiry index, capacity, labels, then a CRC32C of everything before it.
+	// Slot: state, insertion order, write sequence, then one long per column.
+	// A slot's body is forced to disk before its state marks it live, and a replacement is written to a fresh slot
+	// before the old one is tombstoned, so a crash leaves at worst a duplicate, which the higher sequence wins on load.
+	// The free list and counts are rebuilt from the slot states on every open, so the header never has to change
+	// for ordinary writes.
+
+	public static final String FILE_SUFFIX = ".bin";
+	private static final long MAGIC = 0x4F56455254555245L; // "OVERTURE"
+	private static final int VERSION = 1;
+	private static final int HEADER_BYTES = 4096;
+	private static final int LABELS_OFFSET = 32;
+	private static final int CHECKSUM_OFFSET = HEADER_BYTES - Long.BYTES;
+	private static final int SLOT_HEADER_LONGS = 3;
+	private static final int STATE = 0, ORDER = 1, SEQUENCE = 2;
+	private static final long EMPTY = 0, LIVE = 1, TOMBSTONE = 2;
+	private static final int INITIAL_CAPACITY = 1024;
+	private static final int STREAM_CHUNK_SLOTS = 256; // Slots a stream reads per turn of the lock
+
+	private final FileChannel channel;
+	private final int columns;
+	private final int keyIndex;
+	private final int expiryIndex;
+	private final int slotBytes;
+	private final String[] labels;
+	private final SlotIndex index;
+	private final ReentrantReadWriteLock lock; // Readers share the mapping, writers take it alone
+	private MappedByteBuffer mapping; // Replaced when the file grows
+	private int capacity;
+	private int highWater; // No slot at or past this has ever been used
+	private int[] freeSlots; // Stack of tombstoned slots waiting for reuse
+	private int freeCount;
+	private long nextOrder;
+	private long nextSequence;
+
+	// Opens an existing store, or creates one with one column per label
+	public MappedIDStore(File storeFile, int keyIndex, int expiryIndex, String[] labels) throws IOException {
+		boolean created = !storeFile.exists() || storeFile.length() == 0;
+		channel = FileChannel.open(storeFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		lock = new ReentrantReadWriteLock();
+
+		if(created) {
+			if(labels == null) throw new IOException(storeFile + " does not exist and no labels were given to create it");
+			this.columns = labels.length;
+			this.keyIndex = keyIndex;
+			this.expiryIndex = expiryIndex;
+			this.labels = labels;
+			capacity = INITIAL_CAPACITY;
+		} else {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+			while(header.hasRemaining() && channel.read(header, header.position()) >= 0) {}
+			header.flip();
+			if(header.remaining() < HEADER_BYTES || header.getLong(0) != MAGIC) throw new IOException(storeFile + " is not an id store");
+			if(header.getInt(8) != VERSION) throw new IOException(storeFile + " has unsupported version " + header.getInt(8));
+			if(header.getLong(CHECKSUM_OFFSET) != checksum(header)) throw new IOException(storeFile + " has a corrupt header");
+
+			this.columns = header.getInt(12);
+			this.keyIndex = header.getInt(16);
+			this.expiryIndex = header.getInt(20);
+			capacity = header.getInt(24);
+			byte[] labelBytes = new byte[header.getInt(28)];
+			header.get(LABELS_OFFSET, labelBytes);
+			this.labels = labelBytes.length == 0 ? null : new String(labelBytes, StandardCharsets.UTF_8).split(", ");
+		}
+		slotBytes = (SLOT_HEADER_LONGS + columns) * Long.BYTES;
+		index = new SlotIndex(capacity);
+		freeSlots = new int[16];
+
+		map();
+		if(created) {
+			writeHeader();
+		} else {
+			loadSlots();
+		}
+	}
+
+	// Opens the store kept beside an id file, importing the id file the first time
+	public static MappedIDStore open(File idFile, int keyIndex, int expiryIndex) {
+		File storeFile = new File(idFile.getPath() + FILE_SUFFIX);
+		try {
+			if(!storeFile.exists()) convert(idFile, storeFile, keyIndex, expiryIndex);
+			return new MappedIDStore(storeFile, keyIndex, expiryIndex, null);
+		} catch(IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	// Imports a text id file into a binary store. Every column of every row must be a whole number.
+	// The store is built beside the target and moved into place whole, so an interrupted import leaves nothing behind.
+	public static void convert(File idFile, File storeFile, int keyIndex, int expiryIndex) throws IOException {
+		File tempFile = new File(storeFile.getPath() + ".tmp");
+		Files.deleteIfExists(tempFile.toPath());
+		try(FlatFileIDStore source = new FlatFileIDStore(idFile, keyIndex, expiryIndex);
+			MappedIDStore target = new MappedIDStore(tempFile, keyIndex, expiryIndex, source.getLabels())) {
+			IOException[] failure = new IOException[1];
+			source.scan(entryData -> {
+				if(failure[0] != null) return;
+				try {
+					target.put(entryData);
+				} catch(IOException e) {
+					failure[0] = e;
+				}
+			});
+			if(failure[0] != null) throw failure[0];
+		}
+		Files.move(tempFile.toPath(), storeFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	@Override
+	public int getKeyIndex() { return keyIndex; }
+
+	@Override
+	public int getExpiryIndex() { return expiryIndex; }
+
+	@Override
+	public String[] getLabels() { return labels; }
+
+	@Override
+	public String[] get(String key) {
+		lock.readLock().lock();
+		try {
+			int slot = index.get(Long.parseLong(key.strip()));
+			return slot < 0 ? null : readRow(slot);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public void put(String[] entryData) throws IOException {
+		long[] row = parseRow(entryData);
+		lock.writeLock().lock();
+		try {
+			int previousSlot = index.get(row[keyIndex]);
+			writeRow(row, previousSlot < 0 ? nextOrder++ : slotLong(previousSlot, ORDER), previousSlot); // A replaced entry keeps its place
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public String[] update(String key, UnaryOperator<String[]> update) throws IOException {
+		lock.writeLock().lock();
+		try {
+			int slot = index.get(Long.parseLong(key.strip()));
+			if(slot < 0) return null;
+			String[] entryData = readRow(slot);
+			String[] updatedEntry = update.apply(entryData);
+			if(updatedEntry != entryData) writeRow(parseRow(updatedEntry), slotLong(slot, ORDER), slot);
+			return updatedEntry;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public String[] deleteIf(String key, Predicate<String[]> condition) throws IOException {
+		lock.writeLock().lock();
+		try {
+			long keyValue = Long.parseLong(key.strip());
+			int slot = index.get(keyValue);
+			if(slot < 0) return null;
+			String[] entryData = readRow(slot);
+			if(!condition.test(entryData)) return null;
+
+			tombstone(slot);
+			index.remove(keyValue);
+			return entryData;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void scan(Consumer<String[]> visitor) {
+		scanSlots(Long.MAX_VALUE, Comparator.comparingLong(slot -> slotLong(slot, ORDER)), visitor);
+	}
+
+	@Override
+	public void scanExpiring(long untilMillis, Consumer<String[]> visitor) {
+		if(expiryIndex == NO_EXPIRY) return;
+		scanSlots(untilMillis, Comparator.comparingLong(slot -> slotLong(slot, SLOT_HEADER_LONGS + expiryIndex)), visitor);
+	}
+
+	@Override
+	public Stream<String[]> stream() { // Slots are fixed width, so splitting a range of slots splits the file by byte range
+		lock.readLock().lock();
+		try {
+			return StreamSupport.stream(new SlotSpliterator(0, highWater), false);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return index.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		lock.writeLock().lock();
+		try {
+			mapping.force();
+			channel.close();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private void scanSlots(long untilMillis, Comparator<Integer> order, Consumer<String[]> visitor) { // No index on expiry, the slots are walked in place
+		ArrayList<Integer> liveSlots = new ArrayList<>();
+		ArrayList<String[]> rows = new ArrayList<>();
+		lock.readLock().lock();
+		try {
+			for(int slot = 0; slot < highWater; slot++) {
+				if(slotLong(slot, STATE) != LIVE) continue;
+				if(untilMillis != Long.MAX_VALUE && slotLong(slot, SLOT_HEADER_LONGS + expiryIndex) > untilMillis) continue;
+				liveSlots.add(slot);
+			}
+			liveSlots.sort(order);
+			for(int slot : liveSlots) {
+				rows.add(readRow(slot));
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+		rows.forEach(visitor); // Outside the lock, so visitors may write back to the store
+	}
+
+	private void loadSlots() {
+		for(int slot = 0; slot < capacity; slot++) {
+			long state = slotLong(slot, STATE);
+			if(state == EMPTY) continue;
+			highWater = slot + 1;
+			nextOrder = Math.max(nextOrder, slotLong(slot, ORDER) + 1);
+			nextSequence = Math.max(nextSequence, slotLong(slot, SEQUENCE) + 1);
+			if(state != LIVE) continue;
+
+			long key = slotLong(slot, SLOT_HEADER_LONGS + keyIndex);
+			int otherSlot = index.get(key);
+			if(otherSlot >= 0) { // A crash between writing a replacement and tombstoning the original
+				int staleSlot = slotLong(otherSlot, SEQUENCE) > slotLong(slot, SEQUENCE) ? slot : otherSlot;
+				putSlotLong(staleSlot, STATE, TOMBSTONE);
+				if(staleSlot == slot) continue;
+			}
+			index.put(key, slot);
+		}
+		for(int slot = highWater - 1; slot >= 0; slot--) { // Lowest slots come off the stack first
+			if(slotLong(slot, STATE) != LIVE) pushFree(slot);
+		}
+	}
+
+	// Writes the row to a free slot and only then retires the slot it replaces. Caller holds the write lock.
+	private void writeRow(long[] row, long order, int previousSlot) throws IOException {
+		int slot = allocateSlot();
+		putSlotLong(slot, ORDER, order);
+		putSlotLong(slot, SEQUENCE, nextSequence++);
+		for(int column = 0; column < columns; column++) {
+			putSlotLong(slot, SLOT_HEADER_LONGS + column, row[column]);
+		}
+		forceSlot(slot);
+		putSlotLong(slot, STATE, LIVE);
+		forceSlot(slot);
+
+		if(previousSlot >= 0) tombstone(previousSlot);
+		index.put(row[keyIndex], slot);
+	}
+
+	private void tombstone(int slot) {
+		putSlotLong(slot, STATE, TOMBSTONE);
+		forceSlot(slot);
+		pushFree(slot);
+	}
+
+	private int allocateSlot() throws IOException {
+		if(freeCount > 0) return freeSlots[--freeCount];
+		if(highWater == capacity) grow();
+		return highWater++;
+	}
+
+	private void grow() throws IOException {
+		if((long) capacity * 2 * slotBytes + HEADER_BYTES > Integer.MAX_VALUE) throw new IOException("Id store is full");
+		mapping.force();
+		capacity *= 2;
+		map();
+		writeHeader();
+	}
+
+	private void map() throws IOException {
+		mapping = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + (long) capacity * slotBytes); // Extends the file as needed
+	}
+
+	private void writeHeader() {
+		byte[] labelBytes = labels == null ? new byte[0] : String.join(", ", labels).getBytes(StandardCharsets.UTF_8);
+		if(LABELS_OFFSET + labelBytes.length > CHECKSUM_OFFSET) throw new IllegalArgumentException("Labels do not fit in the header");
+		mapping.putLong(0, MAGIC);
+		mapping.putInt(8, VERSION);
+		mapping.putInt(12, columns);
+		mapping.putInt(16, keyIndex);
+		mapping.putInt(20, expiryIndex);
+		mapping.putInt(24, capacity);
+		mapping.putInt(28, labelBytes.length);
+		mapping.put(LABELS_OFFSET, labelBytes);
+		mapping.putLong(CHECKSUM_OFFSET, checksum(mapping));
+		mapping.force(0, HEADER_BYTES);
+	}
+
+	private static long checksum(ByteBuffer header) {
+		CRC32C crc = new CRC32C();
+		crc.update(header.slice(0, CHECKSUM_OFFSET));
+		return crc.getValue();
+	}
+
+	private String[] readRow(int slot) {
+		String[] entryData = new String[columns];
+		for(int column = 0; column < columns; column++) {
+			entryData[column] = String.valueOf(slotLong(slot, SLOT_HEADER_LONGS + column));
+		}
+		return entryData;
+	}
+
+	private long[] parseRow(String[] entryData) {
+		if(entryData.length != columns) throw new IllegalArgumentException("Expected " + columns + " columns but got " + entryData.length);
+		long[] row = new long[columns];
+		for(int column = 0; column < columns; column++) {
+			row[column] = Long.parseLong(entryData[column].strip());
+		}
+		return row;
+	}
+
+	private void pushFree(int slot) {
+		if(freeCount == freeSlots.length) {
+			int[] grownSlots = new int[freeSlots.length * 2];
+			System.arraycopy(freeSlots, 0, grownSlots, 0, freeCount);
+			freeSlots = grownSlots;
+		}
+		freeSlots[freeCount++] = slot;
+	}
+
+	private long slotLong(int slot, int field) {
+		return mapping.getLong(HEADER_BYTES + slot * slotBytes + field * Long.BYTES);
+	}
+
+	private void putSlotLong(int slot, int field, long value) {
+		mapping.putLong(HEADER_BYTES + slot * slotBytes + field * Long.BYTES, value);
+	}
+
+	private void forceSlot(int slot) { // Only the page holding the slot is written back
+		mapping.force(HEADER_BYTES + slot * slotBytes, slotBytes);
+	}
+
+	// Walks a range of slots a chunk at a time. The lock is only held while a chunk is read, since a stream can be
+	// left open or abandoned at any point, so a row moved to another slot mid-stream may be seen twice or not at all.
+	private final class SlotSpliterator implements Spliterator<String[]> {
+
+		private final ArrayList<String[]> chunk = new ArrayList<>(STREAM_CHUNK_SLOTS);
+		private int nextSlot;
+		private final int endSlot;
+		private int chunkPosition;
+
+		private SlotSpliterator(int nextSlot, int endSlot) {
+			this.nextSlot = nextSlot;
+			this.endSlot = endSlot;
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super String[]> action) {
+			while(chunkPosition == chunk.size()) {
+				if(nextSlot >= endSlot) return false;
+				readChunk();
+			}
+			action.accept(chunk.get(chunkPosition++));
+			return true;
+		}
+
+		@Override
+		public Spliterator<String[]> trySplit() {
+			int remaining = endSlot - nextSlot;
+			if(chunkPosition < chunk.size() || remaining < STREAM_CHUNK_SLOTS * 2) return null;
+			int middleSlot = nextSlot + remaining / 2;
+			SlotSpliterator prefix = new SlotSpliterator(nextSlot, middleSlot);
+			nextSlot = middleSlot;
+			return prefix;
+		}
+
+		@Override
+		public long estimateSize() { return endSlot - nextSlot + chunk.size() - chunkPosition; } // Counts dead slots too
+
+		@Override
+		public int characteristics() { return NONNULL; }
+
+		private void readChunk() {
+			chunk.clear();
+			chunkPosition = 0;
+			int chunkEnd = Math.min(endSlot, nextSlot + STREAM_CHUNK_SLOTS);
+			lock.readLock().lock();
+			try {
+				for(int slot = nextSlot; slot < chunkEnd; slot++) {
+					if(slotLong(slot, STATE) == LIVE) chunk.add(readRow(slot));
+				}
+			} finally {
+				lock.readLock().unlock();
+			}
+			nextSlot = chunkEnd;
+		}
+
+	}
+
+}
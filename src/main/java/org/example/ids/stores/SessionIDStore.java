@@ -0,0 +1,271 @@
+package org.example.ids.stores;
+
+import org.example.ids.sessions.LongRecordMap;
+import org.example.ids.sessions.SessionRecord;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+public final class SessionIDStore implements IDStore {
+
+	// Flat file store specialised for session files. The file and journal are the same text as FlatFileIDStore's, but
+	// in memory each session is one SessionRecord of longs in a LongRecordMap keyed on its channel id, rather than a
+	// String key, a String[] row and the map nodes around them. The typed methods answer without allocating; the
+	// String[] ones convert at the boundary so IDManager works unchanged. Each session also keeps the place it was first
+	// added in, which scans and compaction follow like every other store, while scanSessions walks them soonest first.
+
+	private static final int SEGMENTS = 64; // Power of two. Each segment has its own lock, like FlatFileIDStore's stripes
+	private static final Comparator<SessionRecord> EXPIRY_ORDER = Comparator.comparingLong(SessionRecord::expiryMillis).thenComparingLong(SessionRecord::channelId);
+	private static final Comparator<OrderedSession> INSERTION_ORDER = Comparator.comparingLong(OrderedSession::order);
+
+	private final Segment[] segments;
+	private final AtomicLong insertionCounter = new AtomicLong(); // Segments take their places from one shared count
+	private final IDJournal journal;
+
+	public SessionIDStore(File file) {
+		segments = new Segment[SEGMENTS];
+		for(int i = 0; i < SEGMENTS; i++) {
+			segments[i] = new Segment();
+		}
+
+		try { // Same single read and journal replay as the flat file store
+			journal = new IDJournal(file, this::scan, this::size);
+			journal.load(
+					entryData -> indexSession(SessionRecord.fromEntry(entryData)),
+					key -> removeSession(Long.parseLong(key))
+			);
+		} catch(IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	public SessionRecord getSession(long channelId) { // Optimistic first, so readers only lock if a writer got in the way
+		Segment segment = segmentFor(channelId);
+		long stamp = segment.lock.tryOptimisticRead();
+		OrderedSession session = segment.sessions.get(channelId);
+		if(segment.lock.validate(stamp)) return session == null ? null : session.session();
+
+		stamp = segment.lock.readLock();
+		try {
+			session = segment.sessions.get(channelId);
+			return session == null ? null : session.session();
+		} finally {
+			segment.lock.unlockRead(stamp);
+		}
+	}
+
+	public void putSession(SessionRecord session) throws IOException {
+		Segment segment = segmentFor(session.channelId());
+		journal.write(segment.writeLock, () -> {
+			placeSession(segment, session);
+			return journal.enqueueAppend(session.toEntry());
+		});
+	}
+
+	public SessionRecord updateSession(long channelId, UnaryOperator<SessionRecord> update) throws IOException {
+		Segment segment = segmentFor(channelId);
+		SessionRecord[] updatedSession = new SessionRecord[1];
+		journal.write(segment.writeLock, () -> {
+			OrderedSession session = segment.sessions.get(channelId);
+			if(session == null) return IDJournal.NOTHING_QUEUED;
+			updatedSession[0] = update.apply(session.session());
+			if(updatedSession[0] == session.session()) return IDJournal.NOTHING_QUEUED;
+			segment.sessions.put(channelId, new OrderedSession(session.order(), updatedSession[0])); // Keeps its place
+			return journal.enqueueAppend(updatedSession[0].toEntry());
+		});
+		return updatedSession[0];
+	}
+
+	public SessionRecord deleteSessionIf(long channelId, Predicate<SessionRecord> condition) throws IOException {
+		SessionRecord[] deletedSession = new SessionRecord[1];
+		journal.write(segmentFor(channelId).writeLock, () -> deleteLocked(channelId, condition, deletedSession));
+		return deletedSession[0];
+	}
+
+	public void scanSessions(long untilMillis, Consumer<SessionRecord> visitor) { // Soonest first
+		ArrayList<SessionRecord> sessions = new ArrayList<>();
+		for(Segment segment : segments) {
+			long stamp = segment.lock.readLock();
+			try {
+				segment.sessions.forEach((channelId, session) -> {
+					if(session.session().expiryMillis() <= untilMillis) sessions.add(session.session());
+				});
+			} finally {
+				segment.lock.unlockRead(stamp);
+			}
+		}
+		sessions.sort(EXPIRY_ORDER);
+		sessions.forEach(visitor);
+	}
+
+	private List<SessionRecord> orderedSessions() { // Every session in the order it was first added
+		ArrayList<OrderedSession> sessions = new ArrayList<>();
+		for(Segment segment : segments) {
+			long stamp = segment.lock.readLock();
+			try {
+				segment.sessions.forEach((channelId, session) -> sessions.add(session));
+			} finally {
+				segment.lock.unlockRead(stamp);
+			}
+		}
+		sessions.sort(INSERTION_ORDER);
+		return sessions.stream().map(OrderedSession::session).toList();
+	}
+
+	@Override
+	public int getKeyIndex() { return SessionRecord.CHANNEL_INDEX; }
+
+	@Override
+	public int getExpiryIndex() { return SessionRecord.EXPIRY_INDEX; }
+
+	@Override
+	public String[] getLabels() { return journal.getLabels(); }
+
+	@Override
+	public boolean contains(String key) {
+		return getSession(Long.parseLong(key)) != null;
+	}
+
+	@Override
+	public String[] get(String key) {
+		SessionRecord session = getSession(Long.parseLong(key));
+		return session == null ? null : session.toEntry();
+	}
+
+	@Override
+	public void put(String[] entryData) throws IOException {
+		putSession(SessionRecord.fromEntry(entryData));
+	}
+
+	@Override
+	public String[] update(String key, UnaryOperator<String[]> update) throws IOException {
+		String[][] updatedEntry = new String[1][];
+		updateSession(Long.parseLong(key), session -> {
+			String[] entryData = session.toEntry();
+			updatedEntry[0] = update.apply(entryData);
+			return updatedEntry[0] == entryData ? session : SessionRecord.fromEntry(updatedEntry[0]);
+		});
+		return updatedEntry[0];
+	}
+
+	@Override
+	public String[] deleteIf(String key, Predicate<String[]> condition) throws IOException {
+		SessionRecord session = deleteSessionIf(Long.parseLong(key), candidate -> condition.test(candidate.toEntry()));
+		return session == null ? null : session.toEntry();
+	}
+
+	@Override
+	public List<String[]> deleteAllIf(Collection<String> keys, Predicate<String[]> condition) throws IOException {
+		ArrayList<String[]> deletedEntries = new ArrayList<>();
+		SessionRecord[] deletedSession = new SessionRecord[1];
+		long sequence = IDJournal.NOTHING_QUEUED;
+		for(String key : keys) {
+			long channelId = Long.parseLong(key);
+			deletedSession[0] = null;
+			sequence = Math.max(sequence, journal.queue(segmentFor(channelId).writeLock, () -> deleteLocked(channelId, session -> condition.test(session.toEntry()), deletedSession)));
+			if(deletedSession[0] != null) deletedEntries.add(deletedSession[0].toEntry());
+		}
+		journal.sync(sequence); // One flush and fsync for the whole batch
+		return deletedEntries;
+	}
+
+	private long deleteLocked(long channelId, Predicate<SessionRecord> condition, SessionRecord[] deletedSession) { // Caller holds the segment's lock
+		Segment segment = segmentFor(channelId);
+		OrderedSession session = segment.sessions.get(channelId);
+		if(session == null || !condition.test(session.session())) return IDJournal.NOTHING_QUEUED;
+		segment.sessions.remove(channelId);
+		deletedSession[0] = session.session();
+		return journal.enqueueDelete(String.valueOf(channelId));
+	}
+
+	@Override
+	public void scan(Consumer<String[]> visitor) {
+		for(SessionRecord session : orderedSessions()) {
+			visitor.accept(session.toEntry());
+		}
+	}
+
+	@Override
+	public void scanExpiring(long untilMillis, Consumer<String[]> visitor) {
+		scanSessions(untilMillis, session -> visitor.accept(session.toEntry()));
+	}
+
+	@Override
+	public Stream<String[]> stream() { // A segment is copied out only when the stream reaches it
+		return Arrays.stream(segments).flatMap(segment -> {
+			ArrayList<SessionRecord> sessions = new ArrayList<>();
+			long stamp = segment.lock.readLock();
+			try {
+				segment.sessions.forEach((channelId, session) -> sessions.add(session.session()));
+			} finally {
+				segment.lock.unlockRead(stamp);
+			}
+			return sessions.stream().map(SessionRecord::toEntry);
+		});
+	}
+
+	@Override
+	public Stream<String[]> orderedStream() { // Rows are only built as the stream reaches them
+		return orderedSessions().stream().map(SessionRecord::toEntry);
+	}
+
+	@Override
+	public int size() {
+		int size = 0;
+		for(Segment segment : segments) {
+			long stamp = segment.lock.readLock();
+			try {
+				size += segment.sessions.size();
+			} finally {
+				segment.lock.unlockRead(stamp);
+			}
+		}
+		return size;
+	}
+
+	@Override
+	public void close() throws IOException {
+		journal.close();
+	}
+
+	private void indexSession(SessionRecord session) { // Only while loading, before any other thread can see the store
+		placeSession(segmentFor(session.channelId()), session);
+	}
+
+	private void placeSession(Segment segment, SessionRecord session) { // A replaced session keeps its place. Caller holds the segment's lock, or is loading
+		OrderedSession previousSession = segment.sessions.get(session.channelId());
+		long order = previousSession == null ? insertionCounter.getAndIncrement() : previousSession.order();
+		segment.sessions.put(session.channelId(), new OrderedSession(order, session));
+	}
+
+	private void removeSession(long channelId) {
+		segmentFor(channelId).sessions.remove(channelId);
+	}
+
+	private Segment segmentFor(long channelId) { // Top bits of a different mix than the map's own slots
+		return segments[(int) ((channelId * 0xC2B2AE3D27D4EB4FL) >>> (Long.SIZE - Integer.numberOfTrailingZeros(SEGMENTS)))];
+	}
+
+	private static final class Segment {
+
+		private final StampedLock lock = new StampedLock();
+		private final Lock writeLock = lock.asWriteLock(); // The view the journal's write path takes
+		private final LongRecordMap<OrderedSession> sessions = new LongRecordMap<>();
+
+	}
+
+	private record OrderedSession(long order, SessionRecord session) {}
+
+}
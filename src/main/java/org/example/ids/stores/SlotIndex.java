@@ -0,0 +1,51 @@
+package org.example.ids.stores;
+
+import org.example.ids.sessions.LongKeyTable;
+
+import java.util.Arrays;
+
+final class SlotIndex extends LongKeyTable<int[]> {
+
+	// Key to slot number for MappedIDStore, on the same open addressing as LongRecordMap but with the slot numbers in an
+	// int array, so the index costs twelve bytes a position and holds no objects at all. Not thread safe.
+
+	private static final int NO_SLOT = -1;
+
+	SlotIndex(int expectedSize) {
+		super(expectedSize, SlotIndex::freeSlots);
+	}
+
+	int get(long key) { // NO_SLOT when absent
+		int position = find(key);
+		return position == NOT_FOUND ? NO_SLOT : values[position];
+	}
+
+	void put(long key, int slot) {
+		int position = findOrFree(key);
+		boolean added = values[position] == NO_SLOT;
+		keys[position] = key;
+		values[position] = slot;
+		if(added) added();
+	}
+
+	void remove(long key) {
+		int position = find(key);
+		if(position != NOT_FOUND) removeAt(position);
+	}
+
+	private static int[] freeSlots(int capacity) {
+		int[] slots = new int[capacity];
+		Arrays.fill(slots, NO_SLOT); // NO_SLOT marks a free position
+		return slots;
+	}
+
+	@Override
+	protected boolean isFree(int[] slots, int position) { return slots[position] == NO_SLOT; }
+
+	@Override
+	protected void moveValue(int[] from, int fromPosition, int[] to, int toPosition) { to[toPosition] = from[fromPosition]; }
+
+	@Override
+	protected void freeValue(int[] slots, int position) { slots[position] = NO_SLOT; }
+
+}
@@ -0,0 +1,92 @@
+package org.example.ids.timing;
+
+import org.example.metrics.Counter;
+import org.example.metrics.Metrics;
+
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class ExpiryExecutor {
+
+	// Runs the work a timing wheel finds due on a small pool of workers, so the wheel thread itself only ever hands jobs
+	// over and a slow store or Discord call cannot hold up any other timeout. Workers drain whatever has piled up as one
+	// batch. A job that throws is retried on the wheel with exponential backoff and dropped after its last attempt,
+	// without disturbing the rest of its batch. When the queue is full the wheel parks the job for a tick instead of blocking.
+
+	private static final int MAX_ATTEMPTS = 6;
+	private static final long BASE_BACKOFF_MILLIS = 500;
+	private static final long MAX_BACKOFF_MILLIS = 30_000;
+	private static final long FULL_QUEUE_DELAY_MILLIS = 100;
+
+	private static final Counter RETRIES = Metrics.counter("overture_expiry_retries_total", "Expiry jobs that failed and were scheduled again");
+	private static final Counter FAILURES = Metrics.counter("overture_expiry_failures_total", "Expiry jobs dropped after their last attempt");
+	private static final Counter DEFERRED = Metrics.counter("overture_expiry_deferred_total", "Expiry jobs held back a tick because the queue was full");
+
+	private final HashedTimingWheel wheel; // Holds retries and anything the full queue turned away
+	private final ArrayBlockingQueue<Job> queue;
+	private final int maxBatch;
+
+	public ExpiryExecutor(HashedTimingWheel wheel, int workers, int capacity, int maxBatch, String threadName) {
+		this.wheel = wheel;
+		this.queue = new ArrayBlockingQueue<>(capacity);
+		this.maxBatch = maxBatch;
+		for(int i = 0; i < workers; i++) {
+			Thread worker = new Thread(this::run, threadName + "-" + i);
+			worker.setDaemon(true);
+			worker.start();
+		}
+		Metrics.gauge("overture_expiry_queue_depth", "Expiry jobs waiting for a worker", queue::size);
+	}
+
+	public void execute(Task task) {
+		submit(new Job(task, 1));
+	}
+
+	private void submit(Job job) {
+		if(!queue.offer(job)) {
+			DEFERRED.increment();
+			wheel.schedule(timeout -> submit(job), FULL_QUEUE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	private void run() {
+		ArrayList<Job> batch = new ArrayList<>(maxBatch);
+		while(true) {
+			try {
+				batch.add(queue.take());
+			} catch(InterruptedException e) {
+				return;
+			}
+			queue.drainTo(batch, maxBatch - 1); // Everything that came due together goes in one pass
+			for(Job job : batch) {
+				runIsolated(job);
+			}
+			batch.clear();
+		}
+	}
+
+	private void runIsolated(Job job) {
+		try {
+			job.task.run();
+		} catch(Exception e) {
+			if(job.attempt >= MAX_ATTEMPTS) {
+				FAILURES.increment();
+				new RuntimeException("Expiry job failed " + job.attempt + " times, dropping it", e).printStackTrace();
+				return;
+			}
+			RETRIES.increment();
+			long backoffMillis = Math.min(MAX_BACKOFF_MILLIS, BASE_BACKOFF_MILLIS << (job.attempt - 1));
+			Job retry = new Job(job.task, job.attempt + 1);
+			wheel.schedule(timeout -> submit(retry), backoffMillis, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	@FunctionalInterface
+	public interface Task {
+		void run() throws Exception;
+	}
+
+	private record Job(Task task, int attempt) {}
+
+}
@@ -0,0 +1,165 @@
+package org.example.ids.timing;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+public class HashedTimingWheel {
+
+	// Timeouts hash into a ring of buckets by their deadline tick, so scheduling and cancelling are O(1) no matter how
+	// many sessions are live. Callers only touch lock-free queues; the bucket lists belong to the single wheel thread.
+
+	private final long tickNanos;
+	private final int mask;
+	private final Bucket[] wheel;
+	private final ConcurrentLinkedQueue<Timeout> pendingTimeouts;
+	private final ConcurrentLinkedQueue<Timeout> cancelledTimeouts;
+	private final long startTime;
+	private long tick; // Only touched by the wheel thread
+
+	public HashedTimingWheel(long tickDuration, TimeUnit unit, int ticksPerWheel, String threadName) {
+		if(tickDuration <= 0) throw new IllegalArgumentException("Tick duration must be positive");
+		if(ticksPerWheel <= 0 || Integer.bitCount(ticksPerWheel) != 1) throw new IllegalArgumentException("Ticks per wheel must be a power of two");
+
+		tickNanos = unit.toNanos(tickDuration);
+		mask = ticksPerWheel - 1;
+		wheel = new Bucket[ticksPerWheel];
+		for(int i = 0; i < ticksPerWheel; i++) {
+			wheel[i] = new Bucket();
+		}
+		pendingTimeouts = new ConcurrentLinkedQueue<>();
+		cancelledTimeouts = new ConcurrentLinkedQueue<>();
+		startTime = System.nanoTime();
+
+		Thread worker = new Thread(this::run, threadName);
+		worker.setDaemon(true);
+		worker.start();
+	}
+
+	public Timeout schedule(Consumer<Timeout> task, long delay, TimeUnit unit) {
+		Timeout timeout = new Timeout(task, System.nanoTime() - startTime + Math.max(0, unit.toNanos(delay)));
+		pendingTimeouts.add(timeout);
+		return timeout;
+	}
+
+	private void run() {
+		while(true) {
+			long sleepNanos = tickNanos * (tick + 1) - (System.nanoTime() - startTime);
+			if(sleepNanos > 0) {
+				try {
+					TimeUnit.NANOSECONDS.sleep(sleepNanos);
+				} catch(InterruptedException e) {
+					return;
+				}
+			}
+
+			removeCancelled();
+			transferPending();
+			wheel[(int) (tick & mask)].expire(tick);
+			tick++;
+		}
+	}
+
+	private void transferPending() {
+		Timeout timeout;
+		while((timeout = pendingTimeouts.poll()) != null) {
+			if(timeout.state.get() != Timeout.PENDING) continue;
+
+			long deadlineTick = Math.max(tick, timeout.deadline / tickNanos); // Overdue timeouts land in the current bucket
+			timeout.deadlineTick = deadlineTick;
+			wheel[(int) (deadlineTick & mask)].add(timeout);
+		}
+	}
+
+	private void removeCancelled() {
+		Timeout timeout;
+		while((timeout = cancelledTimeouts.poll()) != null) {
+			if(timeout.bucket != null) timeout.bucket.remove(timeout);
+		}
+	}
+
+	public final class Timeout {
+
+		private static final int PENDING = 0;
+		private static final int CANCELLED = 1;
+		private static final int EXPIRED = 2;
+
+		private final Consumer<Timeout> task;
+		private final long deadline; // Nanoseconds since the wheel started
+		private final AtomicInteger state = new AtomicInteger(PENDING);
+		private long deadlineTick;
+		private Bucket bucket;
+		private Timeout previous;
+		private Timeout next;
+
+		private Timeout(Consumer<Timeout> task, long deadline) {
+			this.task = task;
+			this.deadline = deadline;
+		}
+
+		public boolean cancel() {
+			if(!state.compareAndSet(PENDING, CANCELLED)) return false;
+			cancelledTimeouts.add(this); // Unlinked by the wheel thread on its next tick
+			return true;
+		}
+
+		public boolean isCancelled() { return state.get() == CANCELLED; }
+
+		public boolean isExpired() { return state.get() == EXPIRED; }
+
+		public long getDeadlineMillis() { return TimeUnit.NANOSECONDS.toMillis(deadline); }
+
+		private void expire() {
+			if(!state.compareAndSet(PENDING, EXPIRED)) return;
+			try {
+				task.accept(this);
+			} catch(Throwable t) { // A failing task must not take the wheel thread down with it
+				t.printStackTrace();
+			}
+		}
+
+	}
+
+	private static final class Bucket {
+
+		private Timeout head;
+		private Timeout tail;
+
+		private void add(Timeout timeout) {
+			timeout.bucket = this;
+			if(head == null) {
+				head = tail = timeout;
+			} else {
+				tail.next = timeout;
+				timeout.previous = tail;
+				tail = timeout;
+			}
+		}
+
+		private void expire(long currentTick) {
+			Timeout timeout = head;
+			while(timeout != null) {
+				Timeout next = timeout.next;
+				if(timeout.deadlineTick <= currentTick) { // Later timeouts in this bucket are due on a future rotation
+					remove(timeout);
+					timeout.expire();
+				}
+				timeout = next;
+			}
+		}
+
+		private void remove(Timeout timeout) {
+			if(timeout.bucket != this) return;
+			if(timeout.previous != null) timeout.previous.next = timeout.next;
+			else head = timeout.next;
+			if(timeout.next != null) timeout.next.previous = timeout.previous;
+			else tail = timeout.previous;
+			timeout.previous = null;
+			timeout.next = null;
+			timeout.bucket = null;
+		}
+
+	}
+
+}
@@ -2,26 +2,47 @@ package org.example.launch;
 
 import net.dv8tion.jda.api.EmbedBuilder;
 import net.dv8tion.jda.api.JDA;
-import net.dv8tion.jda.api.JDABuilder;
 import net.dv8tion.jda.api.entities.Activity;
 import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.events.session.ReadyEvent;
+import net.dv8tion.jda.api.hooks.ListenerAdapter;
 import net.dv8tion.jda.api.interactions.commands.OptionType;
 import net.dv8tion.jda.api.interactions.commands.build.Commands;
-import net.dv8tion.jda.api.interactions.components.selections.StringSelectMenu;
+import net.dv8tion.jda.api.interactions.commands.build.SlashCommandData;
 import net.dv8tion.jda.api.requests.GatewayIntent;
+import net.dv8tion.jda.api.sharding.DefaultShardManagerBuilder;
+import net.dv8tion.jda.api.sharding.ShardManager;
 import net.dv8tion.jda.api.utils.cache.CacheFlag;
-import org.example.exceptions.OvertureNotFoundException;
+import org.example.commands.CommandRouter;
+import org.example.guilds.GuildContexts;
 import org.example.listeners.ApplicationListener;
 import org.example.listeners.RoleListener;
+import org.example.metrics.Metrics;
+import org.example.metrics.MetricsServer;
+import org.example.outbound.Outbox;
 
 import java.awt.*;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 public class Launcher {
 
-	public static final long OVERTURE_ID = 1158457852629897249L;
+	public static final long OVERTURE_ID = 1158457852629897249L; // The guild the bot was first written for
 	public static final String LOCAL_FILE_PATHWAY = "src/main/java/org/example/";
-	private final StringSelectMenu.Builder roleMenuTemplate = StringSelectMenu.create("roles");
+	private final Outbox outbox = new Outbox();
+	private final GuildContexts guildContexts = new GuildContexts(new File(LOCAL_FILE_PATHWAY + "ids/guilds"));
 	// TODO Make apply and feedback commands more user friendly
 	// TODO Perhaps make it so the commands work only in a specific channel, THOUGH technically they can work anyway without fault?
 
@@ -30,40 +51,99 @@ public class Launcher {
 	}
 
 	public Launcher() throws InterruptedException {
+		long startTime = System.nanoTime();
+		try { // Metrics are optional, the bot runs fine without the endpoint
+			new MetricsServer(Integer.getInteger("overture.metrics.port", MetricsServer.DEFAULT_PORT)).start();
+		} catch(IOException e) {
+			e.printStackTrace();
+		}
+
+		// ROUTE COMMANDS, EACH TO ONE HANDLER ON ITS OWN POOL
+		ApplicationListener applicationListener = new ApplicationListener(this);
+		RoleListener roleListener = new RoleListener(this);
+		CommandRouter commandRouter = new CommandRouter()
+				.route(Commands.slash("apply", "Apply for a new creator skill role.")
+						.setGuildOnly(true),
+						applicationListener::onApply, 16, 256)
+				.route(Commands.slash("addlc", "Create a layout creator role.")
+						.setGuildOnly(true)
+						.addOption(OptionType.STRING, "role-name", "The name of the role to be created.", true)
+						.addOption(OptionType.STRING, "role-hex", "The color of the role.", true)
+						.addOption(OptionType.STRING, "emoji-name", "The name of the matching emoji to be created.", true)
+						.addOption(OptionType.ATTACHMENT, "icon", "The icon that the role and emoji will use.", true),
+						roleListener::onAddLayoutCreator, 2, 16); // Image work, kept small so it cannot crowd out /apply
+
 		// BUILD API
-		JDABuilder apiBuilder = JDABuilder.create( // Build the API for our use case
+		DefaultShardManagerBuilder shardManagerBuilder = DefaultShardManagerBuilder.create( // Build the API for our use case
 				"",
 				GatewayIntent.GUILD_MEMBERS,
 				GatewayIntent.DIRECT_MESSAGES,
-				GatewayIntent.MESSAGE_CONTENT
+				GatewayIntent.MESSAGE_CONTENT,
+				GatewayIntent.GUILD_EMOJIS_AND_STICKERS // Keeps the emoji cache and rank menu current without REST lookups
+		);
+		shardManagerBuilder.setShardsTotal(Integer.getInteger("overture.shards", -1)); // -1 lets Discord recommend a count
+		shardManagerBuilder.setActivity(Activity.listening("GD songs..."));
+		shardManagerBuilder.setEventManagerProvider(shardId -> new VirtualThreadEventManager()); // Listeners run on virtual threads, ordered per user
+		shardManagerBuilder.disableCache(CacheFlag.ACTIVITY, CacheFlag.VOICE_STATE, CacheFlag.STICKER, CacheFlag.CLIENT_STATUS, CacheFlag.ONLINE_STATUS, CacheFlag.SCHEDULED_EVENTS);
+		Semaphore readyShards = new Semaphore(0); // A permit for each shard that has logged in and cached its guilds
+		shardManagerBuilder.addEventListeners( // Guild contexts load as each guild becomes ready, on its own virtual thread
+				guildContexts,
+				applicationListener,
+				commandRouter,
+				new ListenerAdapter() {
+					@Override
+					public void onReady(ReadyEvent event) { readyShards.release(); }
+				}
 		);
-		apiBuilder.setActivity(Activity.listening("GD songs..."));
-		apiBuilder.disableCache(CacheFlag.ACTIVITY, CacheFlag.VOICE_STATE, CacheFlag.EMOJI, CacheFlag.STICKER, CacheFlag.CLIENT_STATUS, CacheFlag.ONLINE_STATUS, CacheFlag.SCHEDULED_EVENTS);
-		JDA api = apiBuilder.build();
+		ShardManager shardManager = shardManagerBuilder.build();
+
+		// ADD COMMANDS ONCE, FOR EVERY GUILD
+		readyShards.acquire(shardManager.getShardsTotal()); // Shards log in one after another, this wakes once the last is ready
 
-		// GET OVERTURE AND ADD COMMANDS TO IT
-		api.awaitReady(); // Block thread until API connected to discord
+		updateCommandsIfChanged(shardManager.getShards().get(0), commandRouter.getCommands(), Path.of(LOCAL_FILE_PATHWAY + "ids/commandsHash.txt"));
+		loadGuilds(guildContexts, shardManager.getGuildCache());
+
+		long readyMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+		Metrics.gauge("overture_startup_millis", "Time from launch until every guild was loaded", () -> readyMillis);
+	}
 
-		Guild overture = api.getGuildById(OVERTURE_ID);
-		if(overture == null) { // The Overture server is not found
-			api.shutdown();
-			throw new OvertureNotFoundException("Overture not found by bot. Shutting down...");
+	// Waits out any guild still loading, all at once
+	public static void loadGuilds(GuildContexts guildContexts, Iterable<Guild> guilds) {
+		try(ExecutorService loader = Executors.newVirtualThreadPerTaskExecutor()) {
+			for(Guild guild : guilds) {
+				loader.execute(() -> guildContexts.get(guild));
+			}
 		}
+	}
 
-		overture.updateCommands().addCommands(
-				Commands.slash("apply", "Apply for a new creator skill role."),
-				Commands.slash("addlc", "Create a layout creator role.")
-						.addOption(OptionType.STRING, "role-name", "The name of the role to be created.", true)
-						.addOption(OptionType.STRING, "role-hex", "The color of the role.", true)
-						.addOption(OptionType.STRING, "emoji-name", "The name of the matching emoji to be created.", true)
-						.addOption(OptionType.ATTACHMENT, "icon", "The icon that the role and emoji will use.", true),
-				Commands.slash("scanlc", "Load a layout creator role into memory.")
-						.addOption(OptionType.STRING, "role-name", "The name of the role to be loaded.", true)
-						.addOption(OptionType.STRING, "emoji-name", "The name of the emoji that corresponds with the role.", true)
-		).queue();
+	// Discord only needs the commands again when their definitions change, so a hash of the last upload is kept on disk.
+	// Returns whether they were sent.
+	public static boolean updateCommandsIfChanged(JDA shard, List<SlashCommandData> commands, Path hashFile) {
+		StringBuilder definitions = new StringBuilder();
+		for(SlashCommandData command : commands) {
+			definitions.append(command.toData()).append('\n');
+		}
+		String commandsHash;
+		try {
+			commandsHash = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(definitions.toString().getBytes(StandardCharsets.UTF_8)));
+		} catch(NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
 
-		api.addEventListener(new ApplicationListener(this, api, overture));
-		api.addEventListener(new RoleListener(this, api, overture));
+		try {
+			if(Files.exists(hashFile) && Files.readString(hashFile).strip().equals(commandsHash)) return false;
+		} catch(IOException e) { // Unreadable, so upload to be safe
+			e.printStackTrace();
+		}
+
+		shard.updateCommands().addCommands(commands).queue(registered -> { // Global commands reach every guild on every shard
+			try {
+				Files.writeString(hashFile, commandsHash);
+			} catch(IOException e) {
+				e.printStackTrace();
+			}
+		});
+		return true;
 	}
 
 	public enum EmbedStates {
@@ -93,6 +173,8 @@ public class Launcher {
 		return getStyledEmbedBuilder(EmbedStates.NEUTRAL, null);
 	}
 
-	public StringSelectMenu.Builder getRoleMenuTemplate() { return roleMenuTemplate; }
+	public GuildContexts getGuildContexts() { return guildContexts; }
+
+	public Outbox getOutbox() { return outbox; }
 
 }
\ No newline at end of file
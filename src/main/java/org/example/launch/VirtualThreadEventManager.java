@@ -0,0 +1,68 @@
+package org.example.launch;
+
+import net.dv8tion.jda.api.entities.channel.ChannelType;
+import net.dv8tion.jda.api.events.GenericEvent;
+import net.dv8tion.jda.api.events.emoji.GenericEmojiEvent;
+import net.dv8tion.jda.api.events.interaction.GenericInteractionCreateEvent;
+import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
+import net.dv8tion.jda.api.events.message.GenericMessageEvent;
+import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
+import net.dv8tion.jda.api.events.role.GenericRoleEvent;
+import net.dv8tion.jda.api.hooks.InterfacedEventManager;
+import org.example.metrics.LatencyHistogram;
+import org.example.metrics.Metrics;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class VirtualThreadEventManager extends InterfacedEventManager {
+
+	// Hands every event to its own virtual thread so listeners can block on Discord without holding up anyone else.
+	// Events that share an ordering key (the same user, channel or guild) are chained so they still run one at a time, in order.
+	// Each shard gets its own manager, but the lanes are shared so a user's DMs on one shard and guilds on another stay in order.
+
+	private static final long UNORDERED = 0;
+	private static final LatencyHistogram QUEUE_LATENCY = Metrics.histogram("overture_event_queue_seconds", "Time an event waited behind earlier events with the same ordering key");
+	private static final LatencyHistogram DISPATCH_LATENCY = Metrics.histogram("overture_event_dispatch_seconds", "Time listeners spent on an event, including blocked time");
+
+	private static final ExecutorService EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+	private static final ConcurrentHashMap<Long, CompletableFuture<Void>> LANES = new ConcurrentHashMap<>(); // Last queued event per ordering key
+
+	@Override
+	public void handle(GenericEvent event) {
+		long queuedTime = System.nanoTime();
+		long orderingKey = getOrderingKey(event);
+		if(orderingKey == UNORDERED) {
+			EXECUTOR.execute(() -> dispatch(event, queuedTime));
+			return;
+		}
+
+		CompletableFuture<Void> lane = LANES.compute(orderingKey, (key, tail) -> tail == null
+				? CompletableFuture.runAsync(() -> dispatch(event, queuedTime), EXECUTOR)
+				: tail.handleAsync((ignored, throwable) -> { dispatch(event, queuedTime); return null; }, EXECUTOR)
+		);
+		lane.whenComplete((ignored, throwable) -> LANES.remove(orderingKey, lane)); // Idle keys do not stay in the map
+	}
+
+	private void dispatch(GenericEvent event, long queuedTime) {
+		long startTime = System.nanoTime();
+		QUEUE_LATENCY.record(startTime - queuedTime);
+		super.handle(event); // Listener exceptions are caught and logged by the interfaced manager
+		DISPATCH_LATENCY.recordSince(startTime);
+	}
+
+	private static long getOrderingKey(GenericEvent event) {
+		if(event instanceof SlashCommandInteractionEvent) return UNORDERED; // Acknowledged at once by the command router, never behind the user's other events
+		if(event instanceof GenericInteractionCreateEvent interactionEvent) return interactionEvent.getUser().getIdLong();
+		// A user's DMs share the lane of their button clicks, so a typed "send" and a click on Send never run together.
+		// The bot's own DM messages stay on the channel, or they would all queue behind each other on the bot's id.
+		if(event instanceof MessageReceivedEvent messageEvent && messageEvent.isFromType(ChannelType.PRIVATE) && !messageEvent.getAuthor().isBot()) return messageEvent.getAuthor().getIdLong();
+		if(event instanceof GenericMessageEvent messageEvent) return messageEvent.getChannel().getIdLong();
+		if(event instanceof GenericRoleEvent roleEvent) return roleEvent.getGuild().getIdLong(); // Keeps the rank registry's updates in order
+		if(event instanceof GenericEmojiEvent emojiEvent) return emojiEvent.getGuild().getIdLong();
+		return UNORDERED;
+	}
+
+}
@@ -0,0 +1,90 @@
+package org.example.limits;
+
+import org.example.metrics.Counter;
+import org.example.metrics.Metrics;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class RateLimiter {
+
+	// Token bucket per user snowflake for one command. Each bucket is a single long holding the time at which it will
+	// be full again, so taking a token is one compare and set and needs no lock. A bucket that has refilled holds
+	// nothing worth keeping, so idle buckets are swept whenever the map has doubled since the last sweep.
+	// A call that races a sweep can land on a bucket that was just dropped, which costs at most one extra token.
+	//
+	// Limits are read from -Doverture.limit.<command>=<burst>/<seconds>, e.g. 3/60 for three calls a minute.
+
+	private static final String LIMIT_PROPERTY_PREFIX = "overture.limit.";
+	private static final int MIN_SWEEP_SIZE = 1024;
+	private static final Counter REJECTED = Metrics.counter("overture_rate_limited_total", "Commands rejected for exceeding their rate limit");
+
+	private final String command;
+	private final long refillNanos; // Time for one token to come back
+	private final long burstNanos; // Time for an empty bucket to fill
+	private final ConcurrentHashMap<Long, AtomicLong> fullAt = new ConcurrentHashMap<>();
+	private final AtomicInteger sweepAtSize = new AtomicInteger(MIN_SWEEP_SIZE);
+
+	public RateLimiter(String command, int burst, long period, TimeUnit unit) {
+		if(burst < 1 || period < 1) throw new IllegalArgumentException("Rate limit for " + command + " must allow at least one call");
+		this.command = command;
+		refillNanos = unit.toNanos(period) / burst;
+		burstNanos = refillNanos * burst;
+	}
+
+	// Limits for a command, overridable by its system property
+	public static RateLimiter forCommand(String command, int defaultBurst, long defaultPeriodSeconds) {
+		String limit = System.getProperty(LIMIT_PROPERTY_PREFIX + command);
+		if(limit == null) return new RateLimiter(command, defaultBurst, defaultPeriodSeconds, TimeUnit.SECONDS);
+
+		String[] parts = limit.split("/");
+		if(parts.length != 2) throw new IllegalArgumentException("Expected <burst>/<seconds> for " + LIMIT_PROPERTY_PREFIX + command + " but got " + limit);
+		return new RateLimiter(command, Integer.parseInt(parts[0].strip()), Long.parseLong(parts[1].strip()), TimeUnit.SECONDS);
+	}
+
+	public boolean tryAcquire(long userId) {
+		return tryAcquire(userId, System.nanoTime());
+	}
+
+	// Takes a token if the user has one left. Rejections touch nothing but the bucket.
+	public boolean tryAcquire(long userId, long nowNanos) {
+		AtomicLong bucket = fullAt.get(userId);
+		if(bucket == null) {
+			AtomicLong newBucket = new AtomicLong(nowNanos + refillNanos); // Created with the first token already taken
+			bucket = fullAt.putIfAbsent(userId, newBucket);
+			if(bucket == null) {
+				if(fullAt.size() >= sweepAtSize.get()) sweep(nowNanos);
+				return true;
+			}
+		}
+
+		while(true) {
+			long bucketFullAt = bucket.get();
+			long startAt = Math.max(bucketFullAt, nowNanos); // A bucket that has refilled starts from now
+			if(startAt + refillNanos - nowNanos > burstNanos) {
+				REJECTED.increment();
+				return false;
+			}
+			if(bucket.compareAndSet(bucketFullAt, startAt + refillNanos)) return true;
+		}
+	}
+
+	public long getRetryAfterMillis(long userId) { // How long until the user has a token again
+		AtomicLong bucket = fullAt.get(userId);
+		if(bucket == null) return 0;
+		long waitNanos = bucket.get() + refillNanos - burstNanos - System.nanoTime();
+		return waitNanos <= 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(waitNanos) + 1;
+	}
+
+	public String getCommand() { return command; }
+
+	private void sweep(long nowNanos) {
+		int sweepSize = sweepAtSize.get();
+		if(!sweepAtSize.compareAndSet(sweepSize, Integer.MAX_VALUE)) return; // Another caller is already sweeping
+		fullAt.values().removeIf(bucket -> bucket.get() <= nowNanos);
+		sweepAtSize.set(Math.max(MIN_SWEEP_SIZE, fullAt.size() * 2));
+	}
+
+}
@@ -0,0 +1,134 @@
+package org.example.links;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+
+public final class LinkScanner {
+
+	// Single pass replacement for the old URL regex. Text is walked once with charAt, nothing is allocated unless a link
+	// is found, and collected links are normalized and deduplicated under one cap shared by every scanned message.
+
+	private static final String[] SCHEMES = { "https://", "http://", "ftp://", "file://" };
+	private static final String URL_CHARS = "-+&@#/%?=~_|!:,.;"; // Plus letters and digits, as in the old regex body
+	private static final String TERMINAL_CHARS = "-+&@#/%=~_|"; // Characters a link may end on, plus letters and digits
+	private static final boolean[] URL_CHAR_TABLE = asciiTable(URL_CHARS);
+	private static final boolean[] TERMINAL_CHAR_TABLE = asciiTable(TERMINAL_CHARS);
+
+	private final int maxLinks;
+	private final LinkedHashSet<String> urls; // Normalized, in the order they were found
+
+	public LinkScanner(int maxLinks) {
+		this.maxLinks = maxLinks;
+		urls = new LinkedHashSet<>();
+	}
+
+	public LinkScanner(int maxLinks, Collection<String> collectedUrls) {
+		this(maxLinks);
+		for(String url : collectedUrls) {
+			addUrl(url);
+		}
+	}
+
+	public void scan(CharSequence text) {
+		int length = text.length();
+		int i = 0;
+		while(i < length && !isFull()) {
+			int schemeLength = startsLink(text, i) ? matchScheme(text, i) : 0;
+			if(schemeLength == 0) {
+				i++;
+				continue;
+			}
+
+			int end = i + schemeLength;
+			int lastTerminal = -1;
+			while(end < length && isUrlChar(text.charAt(end))) {
+				if(isTerminalChar(text.charAt(end))) lastTerminal = end;
+				end++;
+			}
+
+			if(lastTerminal >= 0) {
+				addUrl(text.subSequence(i, lastTerminal + 1).toString());
+				i = lastTerminal + 1;
+			} else { // Nothing but punctuation followed the scheme, which cannot hold another scheme either
+				i = end;
+			}
+		}
+	}
+
+	public boolean addUrl(String url) { // False when full or already collected
+		if(isFull()) return false;
+		return urls.add(normalize(url));
+	}
+
+	public boolean isFull() { return urls.size() >= maxLinks; }
+
+	public List<String> getUrls() { return new ArrayList<>(urls); }
+
+	// Lowercases the scheme and host, which are case-insensitive, and drops a bare trailing slash. Paths are left alone.
+	private static String normalize(String url) {
+		int authorityStart = url.indexOf("://") + 3;
+		int authorityEnd = authorityEnd(url, authorityStart);
+		String normalizedUrl = url.substring(0, authorityEnd).toLowerCase(Locale.ROOT) + url.substring(authorityEnd);
+		if(normalizedUrl.length() == authorityEnd + 1 && normalizedUrl.endsWith("/")) {
+			normalizedUrl = normalizedUrl.substring(0, authorityEnd);
+		}
+		return normalizedUrl;
+	}
+
+	private static int authorityEnd(String url, int authorityStart) {
+		for(int i = authorityStart; i < url.length(); i++) {
+			char c = url.charAt(i);
+			if(c == '/' || c == '?' || c == '#') return i;
+		}
+		return url.length();
+	}
+
+	private static boolean startsLink(CharSequence text, int index) { // Same word boundary the regex's \b enforced
+		return index == 0 || !isWordChar(text.charAt(index - 1));
+	}
+
+	private static int matchScheme(CharSequence text, int index) {
+		for(String scheme : SCHEMES) {
+			if(regionMatchesIgnoreCase(text, index, scheme)) return scheme.length();
+		}
+		return 0;
+	}
+
+	private static boolean regionMatchesIgnoreCase(CharSequence text, int index, String lowerCasePrefix) {
+		if(index + lowerCasePrefix.length() > text.length()) return false;
+		for(int i = 0; i < lowerCasePrefix.length(); i++) {
+			char c = text.charAt(index + i);
+			if(c >= 'A' && c <= 'Z') c += 'a' - 'A';
+			if(c != lowerCasePrefix.charAt(i)) return false;
+		}
+		return true;
+	}
+
+	private static boolean isWordChar(char c) {
+		return c == '_' || Character.isLetterOrDigit(c);
+	}
+
+	private static boolean isUrlChar(char c) {
+		return isAsciiLetterOrDigit(c) || (c < 128 && URL_CHAR_TABLE[c]);
+	}
+
+	private static boolean isTerminalChar(char c) {
+		return isAsciiLetterOrDigit(c) || (c < 128 && TERMINAL_CHAR_TABLE[c]);
+	}
+
+	private static boolean isAsciiLetterOrDigit(char c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+	}
+
+	private static boolean[] asciiTable(String chars) {
+		boolean[] table = new boolean[128];
+		for(int i = 0; i < chars.length(); i++) {
+			table[chars.charAt(i)] = true;
+		}
+		return table;
+	}
+
+}
@@ -1,51 +1,65 @@
 package org.example.listeners;
 
 import net.dv8tion.jda.api.EmbedBuilder;
-import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.entities.*;
 import net.dv8tion.jda.api.entities.channel.ChannelType;
 import net.dv8tion.jda.api.entities.channel.concrete.ForumChannel;
 import net.dv8tion.jda.api.entities.channel.concrete.PrivateChannel;
 import net.dv8tion.jda.api.entities.channel.concrete.ThreadChannel;
-import net.dv8tion.jda.api.entities.channel.forums.ForumPost;
 import net.dv8tion.jda.api.entities.emoji.Emoji;
 import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
 import net.dv8tion.jda.api.events.interaction.component.ButtonInteractionEvent;
 import net.dv8tion.jda.api.events.interaction.component.StringSelectInteractionEvent;
 import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
 import net.dv8tion.jda.api.hooks.ListenerAdapter;
+import net.dv8tion.jda.api.interactions.InteractionHook;
 import net.dv8tion.jda.api.interactions.components.ActionRow;
 import net.dv8tion.jda.api.interactions.components.buttons.Button;
 import net.dv8tion.jda.api.interactions.components.selections.StringSelectMenu;
+import net.dv8tion.jda.api.sharding.ShardManager;
 import net.dv8tion.jda.api.utils.messages.MessageCreateBuilder;
 import org.example.exceptions.RequestException;
-import org.example.ids.idmanagers.IDManager;
+import org.example.guilds.GuildContext;
+import org.example.guilds.GuildContexts;
 import org.example.ids.idmanagers.TimedIDManager;
+import org.example.ids.sessions.SessionRecord;
 import org.example.launch.Launcher;
+import org.example.limits.RateLimiter;
+import org.example.links.LinkScanner;
+import org.example.metrics.Counter;
+import org.example.metrics.LatencyHistogram;
+import org.example.metrics.Metrics;
+import org.example.outbound.Outbox;
+import org.example.outbound.SnowflakeCache;
+import org.example.ranks.RankRegistry;
 
 import java.io.IOException;
 import java.util.*;
-import java.util.concurrent.ExecutionException;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
 
 public class ApplicationListener extends ListenerAdapter {
 
 	private static final int MAX_APPLICATION_VIDEOS = 5;
-	private static final int MAX_SESSION_DURATION = 600000; // 10 minutes in milliseconds
-	private static final int MESSAGE_SCAN_LIMIT = 20;
-
-	private final Launcher launcher;
-	private final JDA api;
-	private final Guild overture;
-	private final TimedIDManager sessionManager;
-	private final IDManager rankManager;
-	private final Timer timeoutTimer;
-	private final ArrayList<TimerTask> applicationTimeouts;
-	private ForumChannel applicationChannel;
-
-	// TODO Read in pre-existing timers and set the roleIDs file
-	// TODO Cool-down timer on applying
+	private static final int MAX_SESSION_DURATION = Integer.getInteger("overture.session.millis", 600000); // 10 minutes in milliseconds
+	private static final Button SEND_BUTTON = Button.success("send", "Send").withEmoji(Emoji.fromUnicode("U+2705"));
+	private static final Button CANCEL_BUTTON = Button.danger("cancel", "Cancel").withEmoji(Emoji.fromUnicode("U+26D4"));
+	private static final LatencyHistogram APPLY_LATENCY = Metrics.histogram("overture_apply_seconds", "Time from /apply until the session is ready");
+	private static final LatencyHistogram SEND_LATENCY = Metrics.histogram("overture_send_seconds", "Time from a send request until the application is posted");
+	private static final LatencyHistogram CANCEL_LATENCY = Metrics.histogram("overture_cancel_seconds", "Time taken to cancel a session");
+	private static final LatencyHistogram BUTTON_LATENCY = Metrics.histogram("overture_button_seconds", "Time spent handling an application button click");
+	private static final LatencyHistogram JUDGE_LATENCY = Metrics.histogram("overture_judge_seconds", "Time spent handling a judge's rank selection");
+	private static final Counter REQUEST_FAILURES = Metrics.counter("overture_request_failures_total", "Application requests that were aborted");
+	private static final RateLimiter APPLY_LIMITER = RateLimiter.forCommand("apply", 2, 60);
+	private static final RateLimiter SEND_LIMITER = RateLimiter.forCommand("send", 3, 30);
+	private static final RateLimiter CANCEL_LIMITER = RateLimiter.forCommand("cancel", 3, 30);
+
+	private final GuildContexts guildContexts;
+	private final Outbox outbox;
+	// DMs with an active session, under both the channel and the user id. Outlives a session by a minute at most.
+	private final SnowflakeCache<PrivateChannel> sessionDms = new SnowflakeCache<>("overture_dm_cache", "DM channel cache", 10_000, MAX_SESSION_DURATION + 60_000, TimeUnit.MILLISECONDS);
+
 	// TODO Anonymous applications
 	// TODO Desired rank option?
 	// TODO Add admin commands (roleIDs will be set by this)
@@ -59,119 +73,156 @@ public class ApplicationListener extends ListenerAdapter {
 	// TODO Automate role and emoji identification based on name
 	// TODO Keep the original application message as an application tracker
 	// TODO Should - at the very least - automatically delete roles from memory if their role gets deleted
-	// TODO Check timer tasks on boot
 	// TODO Automatically find the id files on boot?
 	// TODO Maybe make a error cases file or something that I can read the information from for all of my embedBuilders
 	// TODO Check out the files class for one time use things
 
-	public ApplicationListener(Launcher launcher, JDA api, Guild overture) {
-		this.launcher = launcher;
-		this.api = api;
-		this.overture = overture;
-		timeoutTimer = new Timer(true);
-		applicationTimeouts = new ArrayList<>();
-
-		sessionManager = new TimedIDManager(
-				Launcher.LOCAL_FILE_PATHWAY + "ids/sessionIDs.txt",
-				entryArray -> {
-					EmbedBuilder embedBuilder = Launcher.getStyledEmbedBuilder(Launcher.EmbedStates.FAILURE);
-					embedBuilder.setTitle("Application Timed Out!");
-					embedBuilder.setDescription("Your application session has expired.\nPlease try starting a new application.");
-
-					Message applicationMessage = api.getPrivateChannelById(entryArray[0]).retrieveMessageById(entryArray[1]).complete();
-					LinkedList<Button> disabledButtons = new LinkedList<>();
-					for(Button button : applicationMessage.getButtons()) {
-						disabledButtons.add(button.asDisabled());
-					}
-					applicationMessage.editMessageComponents(ActionRow.of(disabledButtons)).queue();
-					applicationMessage.editMessageEmbeds(embedBuilder.build()).queue();
-				},
-				0,
-				2
-		);
-		rankManager = new IDManager(Launcher.LOCAL_FILE_PATHWAY + "ids/roleIDs.txt", 0);
+	public ApplicationListener(Launcher launcher) {
+		this(launcher.getGuildContexts(), launcher.getOutbox());
+	}
 
-		try { // Account for timers from last boot
-			for(String[] entryArray : sessionManager.dump(false)) {
-				sessionManager.startExpiryTimer(entryArray);
-			}
-		} catch(IOException e) {
-			e.printStackTrace();
-		}
+	public ApplicationListener(GuildContexts guildContexts, Outbox outbox) { // Lets the listener run without a connected launcher
+		this.guildContexts = guildContexts;
+		this.outbox = outbox;
+		guildContexts.setSessionExpiryHandler(this::expireSession);
+	}
 
-		try { // Check for necessary channels
-			applicationChannel = overture.getForumChannelsByName("applications", true).get(0); // The first channel named applications will become the bots designated channel
-		} catch(IndexOutOfBoundsException e) { // No channels found
-			applicationChannel = overture.createForumChannel("applications").complete();
+	private void expireSession(GuildContext context, String[] entryArray) {
+		EmbedBuilder embedBuilder = Launcher.getStyledEmbedBuilder(Launcher.EmbedStates.FAILURE);
+		embedBuilder.setTitle("Application Timed Out!");
+		embedBuilder.setDescription("Your application session has expired.\nPlease try starting a new application.");
+
+		SessionRecord session = SessionRecord.fromEntry(entryArray);
+		ShardManager shardManager = context.getShard().getShardManager();
+		PrivateChannel userDm = sessionDms.get(session.channelId());
+		if(userDm == null) userDm = shardManager.getPrivateChannelById(session.channelId()); // DMs may be cached on any shard
+		forgetDm(entryArray[0]);
+		if(userDm != null) {
+			markExpired(userDm, session, embedBuilder);
+		} else if(session.userId() != SessionRecord.NO_USER) { // Sessions from before a restart, whose DMs nothing has cached yet
+			shardManager.retrieveUserById(session.userId()).submit()
+					.thenCompose(user -> user.openPrivateChannel().submit())
+					.whenComplete((openedDm, throwable) -> {
+						if(throwable == null) markExpired(openedDm, session, embedBuilder);
+						else abortExpiry(session, throwable);
+					});
+		} else { // Stored before sessions kept their user, so there is no way back to the DM
+			abortExpiry(session, new IllegalStateException("DM " + session.channelId() + " is not cached and its session has no user"));
 		}
 	}
 
-	@Override
-	public void onSlashCommandInteraction(SlashCommandInteractionEvent event) {
-		event.deferReply().setEphemeral(true).queue();
+	private void markExpired(PrivateChannel userDm, SessionRecord session, EmbedBuilder embedBuilder) {
+		outbox.editMessage(userDm, String.valueOf(session.messageId()), edit -> edit // The buttons are known, so the message need not be fetched
+				.setEmbeds(embedBuilder.build())
+				.setComponents(ActionRow.of(SEND_BUTTON.asDisabled(), CANCEL_BUTTON.asDisabled()))
+		);
+	}
 
-		if(event.getName().equals("apply")) {
-			PrivateChannel userDm = event.getUser().openPrivateChannel().complete(); // Open DM with command user
-			String userDmId = userDm.getId();
+	private void abortExpiry(SessionRecord session, Throwable cause) { // The session is already gone, only the notice is lost
+		REQUEST_FAILURES.increment();
+		new RequestException("Could not tell the user of session " + session.channelId() + " that it expired!", cause).printStackTrace();
+	}
 
-			EmbedBuilder embedBuilder = Launcher.getStyledEmbedBuilder(Launcher.EmbedStates.NEUTRAL);
-			embedBuilder.setTitle("Application starting!");
-			embedBuilder.setDescription("Please wait.");
-			Message applicationMessage = userDm.sendMessageEmbeds(embedBuilder.build()).complete();
+	public void onApply(SlashCommandInteractionEvent event) { // Routed by the CommandRouter, which has already deferred the reply
+		long startTime = System.nanoTime();
+		InteractionHook hook = event.getHook();
+		if(!APPLY_LIMITER.tryAcquire(event.getUser().getIdLong())) { // Before the DM is opened or the store is touched
+			long retryAfterSeconds = (APPLY_LIMITER.getRetryAfterMillis(event.getUser().getIdLong()) + 999) / 1000;
+			hook.sendMessage("You are applying too often! Please wait " + retryAfterSeconds + " seconds.").queue();
+			return;
+		}
+		GuildContext context = guildContexts.get(event.getGuild()); // Apply is guild only
+
+		EmbedBuilder embedBuilder = Launcher.getStyledEmbedBuilder(Launcher.EmbedStates.NEUTRAL);
+		embedBuilder.setTitle("Application starting!");
+		embedBuilder.setDescription("Please wait.");
+
+		PrivateChannel cachedDm = sessionDms.get(event.getUser().getIdLong()); // Still held when the user restarts a session
+		CompletableFuture<PrivateChannel> dmFuture = cachedDm != null ? CompletableFuture.completedFuture(cachedDm) : event.getUser().openPrivateChannel().submit(); // Open DM with command user
+		CompletableFuture<Message> messageFuture = dmFuture.thenCompose(userDm -> userDm.sendMessageEmbeds(embedBuilder.build()).submit()
+				.thenApply(applicationMessage -> {
+					sessionDms.put(userDm.getIdLong(), userDm);
+					sessionDms.put(event.getUser().getIdLong(), userDm);
+					return applicationMessage;
+				}));
+		messageFuture.thenAccept(applicationMessage -> startSession(context, applicationMessage, event.getUser().getIdLong())).whenComplete((ignored, throwable) -> {
+			if(throwable == null) {
+				hook.sendMessage("Check your DM!").queue();
+			} else { // Abort
+				Message applicationMessage = messageFuture.isCompletedExceptionally() ? null : messageFuture.join();
+				abortApply(applicationMessage, hook, throwable);
+			}
+			APPLY_LATENCY.recordSince(startTime);
+		});
+	}
 
-			try { // Append the session to the idFile.
-				if (sessionManager.containsKey(userDmId)) { // Delete the session if it already exists
-					sessionManager.deleteEntry(userDmId);
-				}
-				sessionManager.appendEntry(new String[]{
-						userDmId,
-						applicationMessage.getId(),
-						String.valueOf(System.currentTimeMillis() + MAX_SESSION_DURATION)
-				});
-
-				embedBuilder.setTitle("Application process initiated!");
-				embedBuilder.setDescription(
-						"""
-								Apply for a new role by sending messages here.
-								A maximum of **5 links or files** may be attached.
-										
-								End your application by typing **"send"** or clicking the **send button**.
-								If you exceed the **maximum attachment limit**, not all of your videos will be included.
-										
-								Your application can be cancelled early by typing **"cancel"** or clicking the **cancel button**.
-								Once an application has been sent, it **cannot** be cancelled.
-								"""
-				);
-				embedBuilder.setThumbnail("https://upload.wikimedia.org/wikipedia/en/3/35/Geometry_Dash_Logo.PNG");
-				applicationMessage.editMessageEmbeds(embedBuilder.build()).queue();
-				applicationMessage.editMessageComponents(
-						ActionRow.of(
-								Button.success("send", "Send").withEmoji(Emoji.fromUnicode("U+2705")),
-								Button.danger("cancel", "Cancel").withEmoji(Emoji.fromUnicode("U+26D4"))
-						)
-				).queue();
-
-				event.getHook().sendMessage("Check your DM!").queue();
-			} catch (IOException e) { // Abort
-				embedBuilder.setColor(Launcher.EmbedStates.FAILURE.getColor());
-				embedBuilder.setTitle("Application process aborted!");
-				embedBuilder.setDescription("Something went wrong.\nPlease try again.");
-				applicationMessage.editMessageEmbeds(embedBuilder.build()).queue();
-
-				event.getHook().sendMessage("Something went wrong! Please try again.").queue();
-				throw new RuntimeException(e);
+	private void startSession(GuildContext context, Message applicationMessage, long userId) {
+		String userDmId = applicationMessage.getChannel().getId();
+		TimedIDManager sessionManager = context.getSessionManager();
+		try { // Append the session to the guild's idFile.
+			GuildContext previousContext = guildContexts.bindSession(userDmId, context);
+			if(previousContext != null) { // A session started in another guild ends, the DM can only collect for one
+				previousContext.getSessionManager().deleteEntry(userDmId);
 			}
+			if(sessionManager.containsKey(userDmId)) { // Delete the session if it already exists
+				sessionManager.deleteEntry(userDmId);
+			}
+			sessionManager.appendEntry(new SessionRecord( // The user is kept so the DM can be reopened after a restart
+					applicationMessage.getChannel().getIdLong(),
+					applicationMessage.getIdLong(),
+					System.currentTimeMillis() + MAX_SESSION_DURATION,
+					userId,
+					List.of()
+			).toEntry());
+		} catch(IOException e) {
+			throw new CompletionException(e);
+		}
+
+		EmbedBuilder embedBuilder = Launcher.getStyledEmbedBuilder(Launcher.EmbedStates.NEUTRAL);
+		embedBuilder.setTitle("Application process initiated!");
+		embedBuilder.setDescription(
+				"""
+						Apply for a new role by sending messages here.
+						A maximum of **5 links or files** may be attached.
+								
+						End your application by typing **"send"** or clicking the **send button**.
+						If you exceed the **maximum attachment limit**, not all of your videos will be included.
+								
+						Your application can be cancelled early by typing **"cancel"** or clicking the **cancel button**.
+						Once an application has been sent, it **cannot** be cancelled.
+						"""
+		);
+		embedBuilder.setThumbnail("https://upload.wikimedia.org/wikipedia/en/3/35/Geometry_Dash_Logo.PNG");
+		outbox.editMessage(applicationMessage, edit -> edit
+				.setEmbeds(embedBuilder.build())
+				.setComponents(ActionRow.of(SEND_BUTTON, CANCEL_BUTTON))
+		);
+	}
+
+	private void abortApply(Message applicationMessage, InteractionHook hook, Throwable cause) {
+		if(applicationMessage != null) {
+			EmbedBuilder embedBuilder = Launcher.getStyledEmbedBuilder(Launcher.EmbedStates.FAILURE);
+			embedBuilder.setTitle("Application process aborted!");
+			embedBuilder.setDescription("Something went wrong.\nPlease try again.");
+			outbox.editMessage(applicationMessage, edit -> edit.setEmbeds(embedBuilder.build()));
 		}
+		hook.sendMessage("Something went wrong! Please try again.").queue();
+		REQUEST_FAILURES.increment();
+		new RequestException("Error during application start!", cause).printStackTrace();
 	}
 
 	@Override
 	public void onMessageReceived(MessageReceivedEvent event) {
 		if(event.getChannelType() == ChannelType.PRIVATE && !event.getAuthor().isBot()) { // Whittle down the message possibilities
 			PrivateChannel userDm = event.getChannel().asPrivateChannel();
+			long userId = event.getAuthor().getIdLong();
 			if(event.getMessage().getContentStripped().equalsIgnoreCase("send")) {
-				processSendRequest(userDm);
+				if(SEND_LIMITER.tryAcquire(userId)) processSendRequest(userDm); // Spam past the limit is dropped without a reply
 			} else if(event.getMessage().getContentStripped().equalsIgnoreCase("cancel")) {
-				processCancelRequest(userDm);
+				if(CANCEL_LIMITER.tryAcquire(userId)) processCancelRequest(userDm);
+			} else {
+				GuildContext context = guildContexts.getSessionOwner(userDm.getId());
+				if(context != null) collectVideoLinks(context, userDm, event.getMessage());
 			}
 		}
 	}
@@ -179,6 +230,11 @@ public class ApplicationListener extends ListenerAdapter {
 	@Override
 	public void onButtonInteraction(ButtonInteractionEvent event) {
 		if(event.getChannelType() == ChannelType.PRIVATE) { // Whittle down the message possibilities
+			long startTime = System.nanoTime();
+			RateLimiter limiter = event.getButton().getId().equals("send") ? SEND_LIMITER : CANCEL_LIMITER;
+			// Buttons share the limits of the commands they stand for. Clicks past the limit are not even acknowledged,
+			// so spamming a button costs no REST call and Discord just shows the click as failed.
+			if(!limiter.tryAcquire(event.getUser().getIdLong())) return;
 			event.deferEdit().queue(); // Prevents the button from telling the user the interaction failed
 			PrivateChannel userDm = event.getChannel().asPrivateChannel();
 
@@ -187,140 +243,182 @@ public class ApplicationListener extends ListenerAdapter {
 			for(Button button : applicationMessage.getButtons()) {
 				disabledButtons.add(button.asDisabled());
 			}
-			applicationMessage.editMessageComponents(ActionRow.of(disabledButtons)).queue();
+			outbox.editMessage(applicationMessage, edit -> edit.setComponents(ActionRow.of(disabledButtons)));
 
 			if(event.getButton().getId().equals("send")) {
 				processSendRequest(userDm);
 			} else if(event.getButton().getId().equals("cancel")) {
 				processCancelRequest(userDm);
 			}
+			BUTTON_LATENCY.recordSince(startTime);
 		}
 	}
 
 	@Override
 	public void onStringSelectInteraction(StringSelectInteractionEvent event) {
+		long startTime = System.nanoTime();
 		event.deferReply().queue();
 
 		List<String> values = event.getInteraction().getValues();
 		String roleId = values.get(0);
-		Role role = overture.getRoleById(roleId);
+		Guild guild = event.getGuild(); // Menus only exist on application posts, inside the guild
+		Role role = guild.getRoleById(roleId);
 		String applicantId = event.getInteraction().getSelectMenu().getId();
 
-		overture.addRoleToMember(UserSnowflake.fromId(applicantId), role).queue();
+		guild.addRoleToMember(UserSnowflake.fromId(applicantId), role).queue();
 
 		EmbedBuilder embedBuilder = Launcher.getStyledEmbedBuilder(Launcher.EmbedStates.SUCCESS);
 		embedBuilder.setTitle("Result sent!");
 		embedBuilder.setDescription("The applicant was awarded **" + role.getName() + "**");
 		event.getHook().sendMessageEmbeds(embedBuilder.build()).queue();
+		JUDGE_LATENCY.recordSince(startTime);
 	}
 
 	protected void processSendRequest(PrivateChannel userDm) {
-		EmbedBuilder embedBuilder = Launcher.getStyledEmbedBuilder();
-		try {
-			String[] sessionData = sessionManager.readForEntry(userDm.getId());
-			if(sessionData != null) {
-				sendApplication(userDm.retrieveMessageById(sessionData[1]).complete());
-			} else {
-				embedBuilder.setColor(Launcher.EmbedStates.FAILURE.getColor());
-				embedBuilder.setTitle("Application not sent!");
-				embedBuilder.setDescription("This channel is not an active application.\nPlease use Overture's **/apply** command to start one.");
-				userDm.sendMessageEmbeds(embedBuilder.build()).queue();
-			}
-		} catch(IOException | ExecutionException | InterruptedException e) {
-			embedBuilder.setColor(Launcher.EmbedStates.FAILURE.getColor());
-			embedBuilder.setTitle("Application process aborted!");
-			embedBuilder.setDescription("Something went wrong.\nPlease try again.");
+		long startTime = System.nanoTime();
+		GuildContext context = guildContexts.getSessionOwner(userDm.getId());
+		String[] sessionData = context == null ? null : context.getSessionManager().readForEntry(userDm.getId());
+		if(sessionData == null) {
+			EmbedBuilder embedBuilder = Launcher.getStyledEmbedBuilder(Launcher.EmbedStates.FAILURE);
+			embedBuilder.setTitle("Application not sent!");
+			embedBuilder.setDescription("This channel is not an active application.\nPlease use Overture's **/apply** command to start one.");
 			userDm.sendMessageEmbeds(embedBuilder.build()).queue();
-			throw new RequestException("Error during application send!");
+			return;
 		}
+
+		CompletableFuture.completedFuture(context)
+				.thenCompose(owner -> sendApplication(owner, userDm))
+				.exceptionally(throwable -> {
+					abortRequest(userDm, new RequestException("Error during application send!", throwable));
+					return null;
+				})
+				.thenRun(() -> SEND_LATENCY.recordSince(startTime));
 	}
 
 	protected void processCancelRequest(PrivateChannel userDm) {
+		long startTime = System.nanoTime();
 		try {
-			sessionManager.deleteEntry(userDm.getId());
+			GuildContext context = guildContexts.getSessionOwner(userDm.getId());
+			if(context != null) endSession(context, userDm.getId());
 
 			EmbedBuilder embedBuilder = Launcher.getStyledEmbedBuilder(Launcher.EmbedStates.FAILURE);
 			embedBuilder.setTitle("Application process cancelled!");
 			embedBuilder.setDescription("You cancelled the application.\nYou may apply again at any time.");
 			userDm.sendMessageEmbeds(embedBuilder.build()).queue();
 		} catch(IOException e) {
-			throw new RequestException("Error during application cancel!");
+			abortRequest(userDm, new RequestException("Error during application cancel!", e));
+		}
+		CANCEL_LATENCY.recordSince(startTime);
+	}
+
+	private void abortRequest(PrivateChannel userDm, RequestException exception) { // Shared failure path for the DM flows
+		EmbedBuilder embedBuilder = Launcher.getStyledEmbedBuilder(Launcher.EmbedStates.FAILURE);
+		embedBuilder.setTitle("Application process aborted!");
+		embedBuilder.setDescription("Something went wrong.\nPlease try again.");
+		userDm.sendMessageEmbeds(embedBuilder.build()).queue();
+		REQUEST_FAILURES.increment();
+		exception.printStackTrace();
+	}
+
+	private String[] endSession(GuildContext context, String userDmId) throws IOException { // Returns the session, or null if it had already ended
+		String[] sessionData = context.getSessionManager().readAndDeleteEntry(userDmId);
+		guildContexts.unbindSession(userDmId, context);
+		forgetDm(userDmId);
+		return sessionData;
+	}
+
+	private void forgetDm(String userDmId) {
+		PrivateChannel userDm = sessionDms.invalidate(Long.parseLong(userDmId));
+		if(userDm != null) sessionDms.invalidate(userDm.getUser().getIdLong());
+	}
+
+	private void collectVideoLinks(GuildContext context, PrivateChannel userDm, Message message) { // Links are stored as they arrive so sending never rescans the DM
+		String content = message.getContentStripped();
+		List<Message.Attachment> attachments = message.getAttachments();
+		if(attachments.isEmpty() && !content.contains("://")) return; // Most chatter holds no links at all
+
+		try {
+			context.getSessionManager().updateEntry(userDm.getId(), sessionData -> {
+				SessionRecord session = SessionRecord.fromEntry(sessionData);
+				List<String> collectedUrls = session.videoLinks();
+				LinkScanner linkScanner = new LinkScanner(MAX_APPLICATION_VIDEOS, collectedUrls);
+				linkScanner.scan(content);
+				for(Message.Attachment attachment : attachments) {
+					linkScanner.addUrl(attachment.getUrl());
+				}
+
+				List<String> urls = linkScanner.getUrls();
+				if(urls.size() == collectedUrls.size()) return sessionData; // Full, or nothing new was found
+				return session.withVideoLinks(urls).toEntry();
+			});
+		} catch(IOException e) {
+			abortRequest(userDm, new RequestException("Error while storing application links!", e));
 		}
 	}
 
-	protected void sendApplication(Message applicationMessage) throws InterruptedException, ExecutionException, IOException, NullPointerException {
-		PrivateChannel userDm = applicationMessage.getChannel().asPrivateChannel();
+	protected CompletableFuture<Void> sendApplication(GuildContext context, PrivateChannel userDm) {
 		User user = userDm.getUser();
 		String username = user.getEffectiveName();
-		String applicationMessageId = applicationMessage.getId();
-
-		LinkedList<Message> messageHistory = new LinkedList<>();
-		userDm.getIterableHistory().cache(false).forEachAsync(message -> {
-			messageHistory.addLast(message);
-			return messageHistory.size() < MESSAGE_SCAN_LIMIT && !message.getId().equals(applicationMessageId);
-		}).get();
-
-		LinkedList<String> videoLinks = new LinkedList<>();
-
-		Pattern urlPattern = Pattern.compile("\\b(https?|ftp|file)://[-a-zA-Z0-9+&@#/%?=~_|!:,.;]*[-a-zA-Z0-9+&@#/%=~_|]"); // URL Regex
-		for(Message message : messageHistory) {
-			Matcher matcher = urlPattern.matcher(message.getContentStripped());
-			while(matcher.find()) {
-				videoLinks.addLast(matcher.group());
-				if(videoLinks.size() >= MAX_APPLICATION_VIDEOS) break;
-			}
 
-			for(Message.Attachment attachment : message.getAttachments()) {
-				videoLinks.add(attachment.getUrl());
-				if(videoLinks.size() >= MAX_APPLICATION_VIDEOS) break;
-			}
+		String[] sessionData;
+		try { // Whoever deletes the session sends it, so a second send, a cancel or the timeout racing this one posts nothing
+			sessionData = endSession(context, userDm.getId());
+		} catch(IOException e) {
+			throw new CompletionException(e);
 		}
-
-		sessionManager.deleteEntry(userDm.getId()); // The only destructive operation so we do it last?
+		if(sessionData == null) return CompletableFuture.completedFuture(null);
+		List<String> videoLinks = SessionRecord.fromEntry(sessionData).videoLinks();
 
 		// At this point no exceptions should be thrown
-		EmbedBuilder embedBuilder = Launcher.getStyledEmbedBuilder();
 		if(videoLinks.size() == 0) {
-			embedBuilder.setColor(Launcher.EmbedStates.FAILURE.getColor());
+			EmbedBuilder embedBuilder = Launcher.getStyledEmbedBuilder(Launcher.EmbedStates.FAILURE);
 			embedBuilder.setTitle("Application not sent!"); // TODO This could be made more user-friendly by not forcing them to restart the application.
 			embedBuilder.setDescription("No files were attached!\nPlease restart your application. ");
-			userDm.sendMessageEmbeds(embedBuilder.build()).queue();
-		} else {
-			MessageCreateBuilder messageCreateBuilder = new MessageCreateBuilder();
-			embedBuilder.setColor(Launcher.EmbedStates.SUCCESS.getColor());
-			embedBuilder.setTitle("New application!");
-			embedBuilder.addField("User", username, true);
-			embedBuilder.addField("Current Rank", overture.getRoleById("1173424788803440783").getName(), true); // TODO Fix this (no guarantee they have a rank)
-			embedBuilder.setDescription(
-     				"""
-					Waiting on feedback from a judge!
-					Select the role that should be rewarded from the dropdown.
-					Feel free to share opinions in the thread before submitting.
-					"""
-			);
-			embedBuilder.setThumbnail(user.getAvatarUrl());
-			messageCreateBuilder.addEmbeds(embedBuilder.build());
-
-			StringSelectMenu.Builder menuBuilder = StringSelectMenu.create(user.getId()); // Allows us to reference the user in the string selection event
-			for(String[] entryArray : rankManager.dump(false)) { // TODO THIS IS VERY SLOW
-				menuBuilder.addOption(overture.getRoleById(entryArray[0]).getName(), entryArray[0], Emoji.fromFormatted(overture.retrieveEmojiById(entryArray[1]).complete().getFormatted()));
-			}
-
-			ForumPost applicationPost = applicationChannel.createForumPost(username + "'s Application", messageCreateBuilder.build())
-					.addActionRow(
-							menuBuilder.build()
-					).complete();
-			ThreadChannel applicationThread = applicationPost.getThreadChannel();
-			for(String link : videoLinks) {
-				applicationThread.sendMessage(link).queue();
-			}
-
-			embedBuilder.clear();
-			embedBuilder = Launcher.getStyledEmbedBuilder(Launcher.EmbedStates.SUCCESS);
-			embedBuilder.setTitle("Application submitted!");
-			embedBuilder.setDescription("");
-			userDm.sendMessageEmbeds(embedBuilder.build()).queue();
+			return userDm.sendMessageEmbeds(embedBuilder.build()).submit().thenAccept(message -> {});
 		}
+
+		Guild guild = context.getGuild();
+		ForumChannel applicationChannel = context.getApplicationChannel();
+		if(guild == null) return CompletableFuture.failedFuture(new RequestException("The guild this application was started in is unavailable!"));
+		if(applicationChannel == null) return CompletableFuture.failedFuture(new RequestException("The applications forum is still being created!"));
+		RankRegistry rankRegistry = context.getRankRegistry();
+
+		return guild.retrieveMember(user).submit()
+				.handle((member, throwable) -> member == null ? null : rankRegistry.getHeldRankName(member)) // The applicant may have left the guild
+				.thenCompose(rankName -> {
+					MessageCreateBuilder messageCreateBuilder = new MessageCreateBuilder();
+					EmbedBuilder embedBuilder = Launcher.getStyledEmbedBuilder(Launcher.EmbedStates.SUCCESS);
+					embedBuilder.setTitle("New application!");
+					embedBuilder.addField("User", username, true);
+					embedBuilder.addField("Current Rank", rankName == null ? "None" : rankName, true);
+					embedBuilder.setDescription(
+							"""
+							Waiting on feedback from a judge!
+							Select the role that should be rewarded from the dropdown.
+							Feel free to share opinions in the thread before submitting.
+							"""
+					);
+					embedBuilder.setThumbnail(user.getAvatarUrl());
+					messageCreateBuilder.addEmbeds(embedBuilder.build());
+
+					StringSelectMenu.Builder menuBuilder = StringSelectMenu.create(user.getId()); // Allows us to reference the user in the string selection event
+					menuBuilder.addOptions(rankRegistry.getMenuOptions());
+
+					return applicationChannel.createForumPost(username + "'s Application", messageCreateBuilder.build())
+							.addActionRow(
+									menuBuilder.build()
+							).submit();
+				})
+				.thenCompose(applicationPost -> {
+					ThreadChannel applicationThread = applicationPost.getThreadChannel();
+					outbox.postLines(applicationThread, videoLinks); // Packed into as few messages as fit
+
+					EmbedBuilder submittedBuilder = Launcher.getStyledEmbedBuilder(Launcher.EmbedStates.SUCCESS);
+					submittedBuilder.setTitle("Application submitted!");
+					submittedBuilder.setDescription("");
+					return userDm.sendMessageEmbeds(submittedBuilder.build()).submit();
+				})
+				.thenAccept(message -> {});
 	}
 
-}
\ No newline at end of file
+}
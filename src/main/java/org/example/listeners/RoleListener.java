@@ -1,89 +1,88 @@
 package org.example.listeners;
 
 import net.dv8tion.jda.api.EmbedBuilder;
-import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.entities.Guild;
-import net.dv8tion.jda.api.entities.Icon;
 import net.dv8tion.jda.api.entities.Message;
 import net.dv8tion.jda.api.entities.Role;
-import net.dv8tion.jda.api.entities.emoji.Emoji;
 import net.dv8tion.jda.api.entities.emoji.RichCustomEmoji;
 import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
-import net.dv8tion.jda.api.hooks.ListenerAdapter;
-import net.dv8tion.jda.api.interactions.components.selections.StringSelectMenu;
-import org.example.ids.idmanagers.IDManager;
+import org.example.exceptions.RequestException;
+import org.example.guilds.GuildContext;
+import org.example.guilds.GuildContexts;
+import org.example.icons.IconPipeline;
 import org.example.launch.Launcher;
+import org.example.metrics.LatencyHistogram;
+import org.example.metrics.Metrics;
+import org.example.ranks.RankRegistry;
 
 import java.awt.*;
 import java.io.IOException;
-import java.util.LinkedList;
 import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
-public class RoleListener extends ListenerAdapter {
+public class RoleListener {
 
-	private final Launcher launcher;
-	private final JDA api;
-	private final Guild overture;
-	private final IDManager rankManager;
+	// Handles the layout creator command for the CommandRouter, which has already deferred each reply
 
-	public RoleListener(Launcher launcher, JDA api, Guild overture) {
-		this.launcher = launcher;
-		this.api = api;
-		this.overture = overture;
-		rankManager = new IDManager(Launcher.LOCAL_FILE_PATHWAY + "ids/roleIDs.txt", 0);
+	private static final LatencyHistogram ADDLC_LATENCY = Metrics.histogram("overture_addlc_seconds", "Time from /addlc until the rank is registered");
 
-		StringSelectMenu.Builder roleMenuTemplate = launcher.getRoleMenuTemplate();
-		LinkedList<String[]> entries;
-		try {
-			entries = rankManager.dump(false);
-		} catch(IOException e) {
-			throw new RuntimeException(e);
-		}
-		for(String[] entryArray : entries) {
-			String roleName = Objects.requireNonNull(overture.getRoleById(entryArray[0])).getName();
-			Emoji emoji = Emoji.fromFormatted(overture.retrieveEmojiById(entryArray[1]).complete().getFormatted());
-			roleMenuTemplate.addOption(entryArray[0], roleName, emoji);
-		}
-	}
+	private final GuildContexts guildContexts;
+	private final IconPipeline iconPipeline = new IconPipeline(2, 16); // Its own threads, so image work never lands on the common pool
 
+	public RoleListener(Launcher launcher) {
+		guildContexts = launcher.getGuildContexts();
+	}
 
-	public void onSlashCommandInteraction(SlashCommandInteractionEvent event) {
-		if(event.getName().equals("addlc")) {
-			String roleName = Objects.requireNonNull(event.getOption("role-name")).getAsString();
-			String roleHex = Objects.requireNonNull(event.getOption("role-hex")).getAsString();
-			Color roleColor = hexToColor(roleHex);
-			String emojiName = Objects.requireNonNull(event.getOption("emoji-name")).getAsString();
-			Message.Attachment iconAttachment = Objects.requireNonNull(event.getOption("icon")).getAsAttachment();
+	public void onAddLayoutCreator(SlashCommandInteractionEvent event) {
+		long startTime = System.nanoTime();
+		Guild guild = event.getGuild(); // Addlc is guild only
+		GuildContext context = guildContexts.get(guild);
+		RankRegistry rankRegistry = context.getRankRegistry();
+		String roleName = Objects.requireNonNull(event.getOption("role-name")).getAsString();
+		String roleHex = Objects.requireNonNull(event.getOption("role-hex")).getAsString();
+		Color roleColor = hexToColor(roleHex);
+		String emojiName = Objects.requireNonNull(event.getOption("emoji-name")).getAsString();
+		Message.Attachment iconAttachment = Objects.requireNonNull(event.getOption("icon")).getAsAttachment();
+		if(!iconAttachment.isImage() || iconAttachment.getSize() > IconPipeline.MAX_UPLOAD_BYTES) { // Refused before anything is downloaded
+			sendCreationFailure(event, "The icon must be an image of at most " + IconPipeline.MAX_UPLOAD_BYTES / (1024 * 1024) + " MB!");
+			return;
+		}
 
-			CompletableFuture<Icon> iconFuture = iconAttachment.getProxy().downloadAsIcon();
-			CompletableFuture<RichCustomEmoji> emojiFuture = iconFuture.thenApplyAsync(icon -> overture.createEmoji(emojiName, icon).complete());
-			CompletableFuture<Role> roleFuture = iconFuture.thenApplyAsync(
-					icon -> overture.createRole()
-							.setName(roleName)
-							.setColor(roleColor)
-							//.setIcon(icon)
-							.setMentionable(true)
-							.complete()
-			);
-			emojiFuture.thenAcceptBoth(roleFuture,
-					(emoji, role) -> {
-						try {
-							rankManager.appendEntry(new String[]{ role.getId(), emoji.getId() });
-							EmbedBuilder embedBuilder = Launcher.getStyledEmbedBuilder(Launcher.EmbedStates.SUCCESS);
-							embedBuilder.setTitle("Role Creation Successful!");
-							embedBuilder.setDescription("The role and emoji were created successfully.\nThey have also been loaded into the bots memory");
-							event.getHook().sendMessageEmbeds(embedBuilder.build()).queue();
-						} catch (IOException e) {
-							EmbedBuilder embedBuilder = Launcher.getStyledEmbedBuilder(Launcher.EmbedStates.FAILURE);
-							embedBuilder.setTitle("Role Creation Failed!");
-							embedBuilder.setDescription("Something went wrong!\nPlease try again!");
-							event.getHook().sendMessageEmbeds(embedBuilder.build()).queue();
-						}
+		CompletableFuture<Role> roleFuture = guild.createRole() // Needs nothing from the icon, so it is created while the icon is processed
+				.setName(roleName)
+				.setColor(roleColor)
+				//.setIcon(icon)
+				.setMentionable(true)
+				.submit();
+		CompletableFuture<RichCustomEmoji> emojiFuture = iconPipeline.findOrCreateEmoji(guild, context.getIconHashes(), iconAttachment.getProxy(), emojiName);
+		roleFuture.thenAcceptBoth(emojiFuture, (role, emoji) -> {
+			try {
+				rankRegistry.addRank(role, emoji);
+			} catch(IOException e) {
+				throw new CompletionException(e);
+			}
+		}).whenComplete((ignored, throwable) -> {
+			if(throwable == null) {
+				EmbedBuilder embedBuilder = Launcher.getStyledEmbedBuilder(Launcher.EmbedStates.SUCCESS);
+				embedBuilder.setTitle("Role Creation Successful!");
+				embedBuilder.setDescription("The role and emoji were created successfully.\nThey have also been loaded into the bots memory");
+				event.getHook().sendMessageEmbeds(embedBuilder.build()).queue();
+			} else {
+				if(emojiFuture.isCompletedExceptionally()) roleFuture.thenAccept(role -> role.delete().queue()); // No rank without its emoji
+				Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+				sendCreationFailure(event, cause instanceof RequestException ? cause.getMessage() : "Something went wrong!");
+				if(!(cause instanceof RequestException)) cause.printStackTrace();
+			}
+			ADDLC_LATENCY.recordSince(startTime);
+		});
+	}
 
-					}
-			);
-		}
+	private void sendCreationFailure(SlashCommandInteractionEvent event, String reason) {
+		EmbedBuilder embedBuilder = Launcher.getStyledEmbedBuilder(Launcher.EmbedStates.FAILURE);
+		embedBuilder.setTitle("Role Creation Failed!");
+		embedBuilder.setDescription(reason + "\nPlease try again!");
+		event.getHook().sendMessageEmbeds(embedBuilder.build()).queue();
 	}
 
 	private Color hexToColor(String hexCode) {
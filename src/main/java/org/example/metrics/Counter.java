@@ -0,0 +1,36 @@
+package org.example.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+public class Counter implements Metric, CounterMXBean {
+
+	private final String name;
+	private final String help;
+	private final LongAdder count = new LongAdder();
+
+	Counter(String name, String help) {
+		this.name = name;
+		this.help = help;
+	}
+
+	public void increment() { count.increment(); }
+
+	public void add(long amount) { count.add(amount); }
+
+	@Override
+	public long getCount() { return count.sum(); }
+
+	@Override
+	public String getName() { return name; }
+
+	@Override
+	public String getHelp() { return help; }
+
+	@Override
+	public void writePrometheus(StringBuilder output) {
+		output.append("# HELP ").append(name).append(' ').append(help).append('\n');
+		output.append("# TYPE ").append(name).append(" counter\n");
+		output.append(name).append(' ').append(getCount()).append('\n');
+	}
+
+}
@@ -0,0 +1,7 @@
+package org.example.metrics;
+
+public interface CounterMXBean {
+
+	long getCount();
+
+}
@@ -0,0 +1,33 @@
+package org.example.metrics;
+
+import java.util.function.LongSupplier;
+
+public class Gauge implements Metric, GaugeMXBean {
+
+	private final String name;
+	private final String help;
+	private final LongSupplier value;
+
+	Gauge(String name, String help, LongSupplier value) {
+		this.name = name;
+		this.help = help;
+		this.value = value;
+	}
+
+	@Override
+	public long getValue() { return value.getAsLong(); }
+
+	@Override
+	public String getName() { return name; }
+
+	@Override
+	public String getHelp() { return help; }
+
+	@Override
+	public void writePrometheus(StringBuilder output) {
+		output.append("# HELP ").append(name).append(' ').append(help).append('\n');
+		output.append("# TYPE ").append(name).append(" gauge\n");
+		output.append(name).append(' ').append(getValue()).append('\n');
+	}
+
+}
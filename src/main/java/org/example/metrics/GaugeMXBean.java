@@ -0,0 +1,7 @@
+package org.example.metrics;
+
+public interface GaugeMXBean {
+
+	long getValue();
+
+}
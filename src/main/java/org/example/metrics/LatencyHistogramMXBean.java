@@ -0,0 +1,17 @@
+package org.example.metrics;
+
+public interface LatencyHistogramMXBean {
+
+	long getCount();
+
+	double getMeanMillis();
+
+	double getP50Millis();
+
+	double getP99Millis();
+
+	double getP999Millis();
+
+	double getMaxMillis();
+
+}
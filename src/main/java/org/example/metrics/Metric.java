@@ -0,0 +1,11 @@
+package org.example.metrics;
+
+public interface Metric {
+
+	String getName();
+
+	String getHelp();
+
+	void writePrometheus(StringBuilder output);
+
+}
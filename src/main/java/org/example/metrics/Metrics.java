@@ -0,0 +1,67 @@
+package org.example.metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.LongSupplier;
+
+public final class Metrics {
+
+	// Process-wide registry. Every metric is published over JMX when it is first created and rendered by scrape()
+	// for the Prometheus endpoint, so instrumenting a class is just a static field.
+
+	private static final String JMX_DOMAIN = "org.example.overture";
+	private static final ConcurrentSkipListMap<String, Metric> METRICS = new ConcurrentSkipListMap<>(); // Sorted for stable scrapes
+
+	private Metrics() {}
+
+	public static LatencyHistogram histogram(String name, String help) {
+		return (LatencyHistogram) METRICS.computeIfAbsent(name, key -> register(new LatencyHistogram(name, help), "Histogram"));
+	}
+
+	public static Counter counter(String name, String help) {
+		return (Counter) METRICS.computeIfAbsent(name, key -> register(new Counter(name, help), "Counter"));
+	}
+
+	public static void gauge(String name, String help, LongSupplier value) { // A newer gauge with the same name replaces the old one
+		Metric previous = METRICS.put(name, register(new Gauge(name, help, value), "Gauge"));
+		if(previous != null) unregister(previous, "Gauge");
+	}
+
+	public static String scrape() {
+		StringBuilder output = new StringBuilder();
+		for(Metric metric : METRICS.values()) {
+			metric.writePrometheus(output);
+		}
+		return output.toString();
+	}
+
+	private static Metric register(Metric metric, String type) {
+		MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+		try {
+			ObjectName objectName = objectName(metric, type);
+			if(mBeanServer.isRegistered(objectName)) mBeanServer.unregisterMBean(objectName);
+			mBeanServer.registerMBean(metric, objectName);
+		} catch(JMException e) { // The metric still works for scrapes without JMX
+			e.printStackTrace();
+		}
+		return metric;
+	}
+
+	private static void unregister(Metric metric, String type) {
+		try {
+			ObjectName objectName = objectName(metric, type);
+			MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+			if(mBeanServer.isRegistered(objectName)) mBeanServer.unregisterMBean(objectName);
+		} catch(JMException e) {
+			e.printStackTrace();
+		}
+	}
+
+	private static ObjectName objectName(Metric metric, String type) throws JMException {
+		return new ObjectName(JMX_DOMAIN + ":type=" + type + ",name=" + metric.getName());
+	}
+
+}
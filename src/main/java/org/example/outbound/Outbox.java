@@ -0,0 +1,115 @@
+package org.example.outbound;
+
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.channel.middleman.MessageChannel;
+import net.dv8tion.jda.api.utils.messages.MessageEditBuilder;
+import org.example.metrics.Counter;
+import org.example.metrics.Metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+public class Outbox {
+
+	// Funnels outgoing edits and thread posts so they cost as few REST calls as possible. Edits to the same message
+	// within a short window are merged into one request, and runs of lines are packed into as few messages as fit.
+
+	private static final long COALESCE_WINDOW_MILLIS = 25;
+	private static final Counter EDITS_MERGED = Metrics.counter("overture_rest_edits_merged_total", "Message edits merged into an already pending edit");
+	private static final Counter POSTS_MERGED = Metrics.counter("overture_rest_posts_merged_total", "Thread posts packed into a shared message");
+	private static final Counter REST_CALLS_SAVED = Metrics.counter("overture_rest_calls_saved_total", "REST calls avoided by merging edits and posts");
+
+	private final ConcurrentHashMap<String, PendingEdit> pendingEdits; // Keyed on channel and message id
+	private final ScheduledExecutorService flusher;
+
+	public Outbox() {
+		pendingEdits = new ConcurrentHashMap<>();
+		flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "outbox-flusher");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	public CompletableFuture<Message> editMessage(Message message, Consumer<MessageEditBuilder> edit) {
+		return editMessage(message.getChannel(), message.getId(), edit);
+	}
+
+	// Later edits win field by field, so separate embed and component edits end up in the same request
+	public CompletableFuture<Message> editMessage(MessageChannel channel, String messageId, Consumer<MessageEditBuilder> edit) {
+		String key = channel.getId() + ":" + messageId;
+		PendingEdit pendingEdit = pendingEdits.compute(key, (ignored, existing) -> {
+			if(existing == null) {
+				existing = new PendingEdit(channel, messageId);
+				flusher.schedule(() -> flushEdit(key), COALESCE_WINDOW_MILLIS, TimeUnit.MILLISECONDS);
+			} else {
+				EDITS_MERGED.increment();
+				REST_CALLS_SAVED.increment();
+			}
+			edit.accept(existing.builder);
+			return existing;
+		});
+		return pendingEdit.future;
+	}
+
+	// Sends each line in order, packing consecutive lines into messages up to Discord's content limit
+	public CompletableFuture<Void> postLines(MessageChannel channel, List<String> lines) {
+		List<String> messages = packLines(lines);
+		int saved = lines.size() - messages.size();
+		POSTS_MERGED.add(saved);
+		REST_CALLS_SAVED.add(saved);
+
+		CompletableFuture<Void> posted = CompletableFuture.completedFuture(null);
+		for(String content : messages) { // Chained so the thread reads in the order the links were given
+			posted = posted.thenCompose(ignored -> channel.sendMessage(content).submit().thenAccept(message -> {}));
+		}
+		return posted;
+	}
+
+	private void flushEdit(String key) {
+		PendingEdit pendingEdit = pendingEdits.remove(key);
+		if(pendingEdit == null) return;
+
+		pendingEdit.channel.editMessageById(pendingEdit.messageId, pendingEdit.builder.build()).submit()
+				.whenComplete((message, throwable) -> {
+					if(throwable == null) pendingEdit.future.complete(message);
+					else pendingEdit.future.completeExceptionally(throwable);
+				});
+	}
+
+	private static List<String> packLines(List<String> lines) {
+		ArrayList<String> messages = new ArrayList<>();
+		StringBuilder content = new StringBuilder();
+		for(String line : lines) {
+			if(content.length() > 0 && content.length() + 1 + line.length() > Message.MAX_CONTENT_LENGTH) {
+				messages.add(content.toString());
+				content.setLength(0);
+			}
+			if(content.length() > 0) content.append('\n');
+			content.append(line);
+		}
+		if(content.length() > 0) messages.add(content.toString());
+		return messages;
+	}
+
+	private static final class PendingEdit {
+
+		private final MessageChannel channel;
+		private final String messageId;
+		private final MessageEditBuilder builder = new MessageEditBuilder();
+		private final CompletableFuture<Message> future = new CompletableFuture<>();
+
+		private PendingEdit(MessageChannel channel, String messageId) {
+			this.channel = channel;
+			this.messageId = messageId;
+		}
+
+	}
+
+}
@@ -0,0 +1,114 @@
+package org.example.outbound;
+
+import org.example.metrics.Counter;
+import org.example.metrics.Metrics;
+
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+
+public final class SnowflakeCache<V> {
+
+	// Keeps handles the bot has just created or seen, keyed by snowflake, so the next use skips the REST round trip.
+	// Bounded both ways: every segment evicts its least recently used entry once full, and entries older than the
+	// time to live are treated as missing. Snowflakes never collide across kinds, so one cache can hold a channel
+	// under both its own id and its user's. Segments lock separately, so lookups for different keys rarely meet.
+
+	private static final int SEGMENTS = 16;
+
+	private final Segment<V>[] segments;
+	private final long timeToLiveNanos;
+	private final Counter hits;
+	private final Counter misses;
+
+	public SnowflakeCache(String name, String help, int maxSize, long timeToLive, TimeUnit unit) {
+		segments = newSegments(SEGMENTS);
+		for(int i = 0; i < SEGMENTS; i++) {
+			segments[i] = new Segment<>(Math.max(1, maxSize / SEGMENTS));
+		}
+		timeToLiveNanos = unit.toNanos(timeToLive);
+		hits = Metrics.counter(name + "_hits_total", "Lookups answered by the " + help);
+		misses = Metrics.counter(name + "_misses_total", "Lookups the " + help + " could not answer");
+		Metrics.gauge(name + "_size", "Entries held by the " + help, this::size);
+		Metrics.gauge(name + "_hit_percent", "Share of lookups answered by the " + help, this::getHitPercent);
+	}
+
+	public V get(long key) { // Null on a miss, the caller falls back to REST
+		Segment<V> segment = segmentFor(key);
+		synchronized(segment) {
+			Entry<V> entry = segment.get(key);
+			if(entry != null && System.nanoTime() - entry.storedAt < timeToLiveNanos) {
+				hits.increment();
+				return entry.value;
+			}
+			if(entry != null) segment.remove(key); // Expired
+		}
+		misses.increment();
+		return null;
+	}
+
+	public void put(long key, V value) {
+		Segment<V> segment = segmentFor(key);
+		synchronized(segment) {
+			segment.put(key, new Entry<>(value, System.nanoTime()));
+		}
+	}
+
+	public V invalidate(long key) { // Returns what was held, expired or not, without counting as a lookup
+		Segment<V> segment = segmentFor(key);
+		synchronized(segment) {
+			Entry<V> entry = segment.remove(key);
+			return entry == null ? null : entry.value;
+		}
+	}
+
+	public long getHitPercent() {
+		long hitCount = hits.getCount();
+		long lookups = hitCount + misses.getCount();
+		return lookups == 0 ? 0 : hitCount * 100 / lookups;
+	}
+
+	private long size() {
+		long size = 0;
+		for(Segment<V> segment : segments) {
+			synchronized(segment) {
+				size += segment.size();
+			}
+		}
+		return size;
+	}
+
+	@SuppressWarnings("unchecked") // Generic arrays cannot be created, and the array never leaves this class
+	private static <V> Segment<V>[] newSegments(int count) {
+		return (Segment<V>[]) new Segment<?>[count];
+	}
+
+	private Segment<V> segmentFor(long key) {
+		long hash = key * 0x9E3779B97F4A7C15L; // Snowflakes share their low bits, so spread them first
+		return segments[(int) (hash >>> 60) & (SEGMENTS - 1)];
+	}
+
+	private record Entry<V>(V value, long storedAt) {}
+
+	private static final class Segment<V> { // Wraps its map rather than extending it, a cache is never serialized
+
+		private final int maxSize;
+		private final LinkedHashMap<Long, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true); // Access order, so the eldest entry is the least recently used
+
+		private Segment(int maxSize) {
+			this.maxSize = maxSize;
+		}
+
+		private Entry<V> get(long key) { return entries.get(key); }
+
+		private void put(long key, Entry<V> entry) {
+			entries.put(key, entry);
+			if(entries.size() > maxSize) entries.pollFirstEntry();
+		}
+
+		private Entry<V> remove(long key) { return entries.remove(key); }
+
+		private int size() { return entries.size(); }
+
+	}
+
+}
@@ -0,0 +1,222 @@
+package org.example.ranks;
+
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.Role;
+import net.dv8tion.jda.api.entities.emoji.CustomEmoji;
+import net.dv8tion.jda.api.entities.emoji.Emoji;
+import net.dv8tion.jda.api.entities.emoji.RichCustomEmoji;
+import net.dv8tion.jda.api.events.emoji.EmojiAddedEvent;
+import net.dv8tion.jda.api.events.emoji.EmojiRemovedEvent;
+import net.dv8tion.jda.api.events.emoji.update.EmojiUpdateNameEvent;
+import net.dv8tion.jda.api.events.role.RoleDeleteEvent;
+import net.dv8tion.jda.api.events.role.update.RoleUpdateNameEvent;
+import net.dv8tion.jda.api.exceptions.ErrorResponseException;
+import net.dv8tion.jda.api.hooks.ListenerAdapter;
+import net.dv8tion.jda.api.interactions.components.selections.SelectOption;
+import net.dv8tion.jda.api.requests.ErrorResponse;
+import org.example.ids.idmanagers.IDManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class RankRegistry extends ListenerAdapter {
+
+	// Single source of truth for one guild's layout creator ranks. The judge dropdown is kept ready-built and is only rebuilt
+	// when a rank, its role or its emoji changes, so sending an application never has to look any of them up.
+	// Every rebuild is also saved to a snapshot file, which lets the menu come up complete on the next boot while
+	// anything missing from the emoji cache is fetched in the background, all at once. The file is written after the
+	// monitor is released, so menu reads never wait on the disk.
+
+	private static final String SNAPSHOT_SEPARATOR = "\t";
+
+	private final Guild guild;
+	private final IDManager rankManager;
+	private final File snapshotFile;
+	private final LinkedHashMap<String, Rank> ranks; // Keyed on role id, guarded by this
+	private volatile List<SelectOption> menuOptions;
+	private long menuVersion; // Guarded by this, counts rebuilds so an older snapshot never replaces a newer one
+	private final ReentrantLock snapshotLock = new ReentrantLock(); // Only held while the snapshot is written, never together with this
+	private long savedVersion; // Guarded by snapshotLock
+
+	public RankRegistry(Guild guild, IDManager rankManager, File snapshotFile) {
+		this.guild = guild;
+		this.rankManager = rankManager;
+		this.snapshotFile = snapshotFile;
+		ranks = new LinkedHashMap<>();
+
+		HashMap<String, CustomEmoji> snapshotEmojis = loadSnapshotEmojis();
+		ArrayList<String> unresolvedEmojiIds = new ArrayList<>();
+		rankManager.orderedStream().forEach(entryArray -> { // The menu lists ranks in the order they were added
+			Role role = guild.getRoleById(entryArray[0]);
+			if(role == null) { // The role was deleted while the bot was offline
+				forgetRank(entryArray[0]);
+				return;
+			}
+
+			CustomEmoji emoji = guild.getEmojiById(entryArray[1]);
+			if(emoji == null) {
+				emoji = snapshotEmojis.get(entryArray[1]); // Good enough to show until Discord confirms it
+				unresolvedEmojiIds.add(entryArray[1]);
+			}
+			ranks.put(role.getId(), new Rank(role.getId(), entryArray[1], role.getName(), emoji));
+		});
+		saveSnapshot(rebuildMenuOptions());
+
+		for(String emojiId : unresolvedEmojiIds) { // All requests are in flight together instead of one after another
+			guild.retrieveEmojiById(emojiId).submit().whenComplete((emoji, throwable) -> {
+				if(throwable == null) {
+					updateEmoji(emojiId, emoji);
+				} else if(throwable instanceof ErrorResponseException errorResponse && errorResponse.getErrorResponse() == ErrorResponse.UNKNOWN_EMOJI) {
+					updateEmoji(emojiId, null); // Deleted while the bot was offline
+				}
+			});
+		}
+	}
+
+	public List<SelectOption> getMenuOptions() { return menuOptions; }
+
+	public synchronized String getHeldRankName(Member member) { // Member roles come highest first, so this is their top rank
+		for(Role role : member.getRoles()) {
+			Rank rank = ranks.get(role.getId());
+			if(rank != null) return rank.roleName();
+		}
+		return null;
+	}
+
+	public void addRank(Role role, RichCustomEmoji emoji) throws IOException {
+		rankManager.appendEntry(new String[]{ role.getId(), emoji.getId() });
+		MenuSnapshot snapshot;
+		synchronized(this) {
+			ranks.put(role.getId(), new Rank(role.getId(), emoji.getId(), role.getName(), emoji));
+			snapshot = rebuildMenuOptions();
+		}
+		saveSnapshot(snapshot);
+	}
+
+	@Override
+	public void onRoleUpdateName(RoleUpdateNameEvent event) {
+		MenuSnapshot snapshot;
+		synchronized(this) {
+			Rank rank = ranks.get(event.getRole().getId());
+			if(rank == null) return;
+			ranks.put(rank.roleId(), rank.withRoleName(event.getNewName()));
+			snapshot = rebuildMenuOptions();
+		}
+		saveSnapshot(snapshot);
+	}
+
+	@Override
+	public void onRoleDelete(RoleDeleteEvent event) {
+		String roleId = event.getRole().getId();
+		MenuSnapshot snapshot;
+		synchronized(this) {
+			if(ranks.remove(roleId) == null) return;
+			snapshot = rebuildMenuOptions();
+		}
+		saveSnapshot(snapshot);
+		forgetRank(roleId);
+	}
+
+	@Override
+	public void onEmojiAdded(EmojiAddedEvent event) {
+		updateEmoji(event.getEmoji().getId(), event.getEmoji());
+	}
+
+	@Override
+	public void onEmojiUpdateName(EmojiUpdateNameEvent event) {
+		updateEmoji(event.getEmoji().getId(), event.getEmoji());
+	}
+
+	@Override
+	public void onEmojiRemoved(EmojiRemovedEvent event) {
+		updateEmoji(event.getEmoji().getId(), null); // The rank stays selectable, just without its emoji
+	}
+
+	private void updateEmoji(String emojiId, CustomEmoji emoji) {
+		MenuSnapshot snapshot = null;
+		synchronized(this) {
+			boolean changed = false;
+			for(Rank rank : ranks.values()) {
+				if(rank.emojiId().equals(emojiId)) {
+					ranks.put(rank.roleId(), rank.withEmoji(emoji));
+					changed = true;
+				}
+			}
+			if(changed) snapshot = rebuildMenuOptions();
+		}
+		if(snapshot != null) saveSnapshot(snapshot);
+	}
+
+	private void forgetRank(String roleId) {
+		try {
+			rankManager.deleteEntry(roleId);
+		} catch(IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	private synchronized MenuSnapshot rebuildMenuOptions() { // The caller saves the snapshot once it has left the monitor
+		ArrayList<SelectOption> options = new ArrayList<>(ranks.size());
+		ArrayList<String> snapshotLines = new ArrayList<>(ranks.size());
+		for(Rank rank : ranks.values()) {
+			SelectOption option = SelectOption.of(rank.roleName(), rank.roleId());
+			options.add(rank.emoji() == null ? option : option.withEmoji(rank.emoji()));
+			if(rank.emoji() != null) {
+				snapshotLines.add(String.join(SNAPSHOT_SEPARATOR, rank.emojiId(), rank.emoji().getName(), String.valueOf(rank.emoji().isAnimated())));
+			}
+		}
+		menuOptions = List.copyOf(options);
+		return new MenuSnapshot(++menuVersion, snapshotLines);
+	}
+
+	private HashMap<String, CustomEmoji> loadSnapshotEmojis() { // Emoji id, name and animation, which is all a menu option needs
+		HashMap<String, CustomEmoji> emojis = new HashMap<>();
+		if(!snapshotFile.exists()) return emojis;
+		try {
+			for(String line : Files.readAllLines(snapshotFile.toPath(), StandardCharsets.UTF_8)) {
+				String[] fields = line.split(SNAPSHOT_SEPARATOR);
+				if(fields.length < 3) continue;
+				emojis.put(fields[0], Emoji.fromCustom(fields[1], Long.parseLong(fields[0]), Boolean.parseBoolean(fields[2])));
+			}
+		} catch(IOException | NumberFormatException e) { // A broken snapshot only costs the REST lookups it would have saved
+			e.printStackTrace();
+		}
+		return emojis;
+	}
+
+	private void saveSnapshot(MenuSnapshot snapshot) {
+		snapshotLock.lock();
+		try {
+			if(snapshot.version() <= savedVersion) return; // A later rebuild got here first and already wrote its menu
+			Path tempFile = Path.of(snapshotFile.getPath() + ".tmp");
+			Files.write(tempFile, snapshot.lines(), StandardCharsets.UTF_8);
+			Files.move(tempFile, snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			savedVersion = snapshot.version();
+		} catch(IOException e) {
+			e.printStackTrace();
+		} finally {
+			snapshotLock.unlock();
+		}
+	}
+
+	private record MenuSnapshot(long version, List<String> lines) {}
+
+	private record Rank(String roleId, String emojiId, String roleName, CustomEmoji emoji) {
+
+		private Rank withRoleName(String roleName) { return new Rank(roleId, emojiId, roleName, emoji); }
+
+		private Rank withEmoji(CustomEmoji emoji) { return new Rank(roleId, emojiId, roleName, emoji); }
+
+	}
+
+}